@@ -0,0 +1,537 @@
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.camel.maven;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.fusesource.camel.component.salesforce.SalesforceLoginConfig;
+import org.fusesource.camel.component.salesforce.api.SalesforceException;
+import org.fusesource.camel.component.salesforce.api.dto.GlobalObjects;
+import org.fusesource.camel.component.salesforce.api.dto.SObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Base class for goals that read Salesforce metadata, with login, SObject filtering
+ * and describe configuration.
+ */
+public abstract class AbstractSalesforceMojo extends AbstractMojo
+{
+    protected static final String FETCH_DESCRIBE = "describe";
+    protected static final String FETCH_BATCH = "batch";
+
+    /**
+     * Salesforce client id
+     * @parameter expression="${clientId}"
+     */
+    protected String clientId;
+
+    /**
+     * Salesforce client secret
+     * @parameter expression="${clientSecret}"
+     */
+    protected String clientSecret;
+
+    /**
+     * Salesforce user name
+     * @parameter expression="${userName}"
+     */
+    protected String userName;
+
+    /**
+     * Salesforce password
+     * @parameter expression="${password}"
+     */
+    protected String password;
+
+    /**
+     * Salesforce version
+     * @parameter expression="${version}" default-value="25.0"
+     */
+    protected String version;
+
+    /**
+     * Names of Salesforce SObject for which POJOs must be generated
+     * @parameter
+     */
+    protected String[] includes;
+
+    /**
+     * Do NOT generate POJOs for these Salesforce SObjects
+     * @parameter
+     */
+    protected String[] excludes;
+
+    /**
+     * Include Salesforce SObjects that match pattern
+     * @parameter expression="${includePattern}"
+     */
+    protected String includePattern;
+
+    /**
+     * Exclude Salesforce SObjects that match pattern
+     * @parameter expression="${excludePattern}"
+     */
+    protected String excludePattern;
+
+    /**
+     * Only include SObjects with these getGlobalObjects attribute values, like queryable=true or custom=true
+     * @parameter
+     */
+    protected Map<String, String> objectAttributes;
+
+    /**
+     * Do NOT generate POJOs for SObjects with names ending in these suffixes, like History, Share or Feed
+     * @parameter
+     */
+    protected String[] excludeSuffixes;
+
+    /**
+     * Maximum number of SObject describe requests in flight, 1 fetches descriptions sequentially
+     * @parameter expression="${describeConcurrency}" default-value="1"
+     */
+    protected int describeConcurrency;
+
+    /**
+     * Strategy for retrieving SObject descriptions, either describe (one request per SObject),
+     * or batch (Composite Batch requests with up to 25 describes, requires API version 34.0 or later)
+     * @parameter expression="${fetchStrategy}" default-value="describe"
+     */
+    protected String fetchStrategy;
+
+    /**
+     * Bypass the local describe cache, and download all SObject descriptions
+     * @parameter expression="${skipDescribeCache}" default-value="false"
+     */
+    protected boolean skipDescribeCache;
+
+    /**
+     * Directory for the local describe cache
+     * @parameter expression="${describeCacheDirectory}" default-value="${user.home}/.camel-salesforce/describe-cache"
+     */
+    protected File describeCacheDirectory;
+
+    /**
+     * Maximum age in hours of describe cache entries
+     * @parameter expression="${describeCacheMaxAge}" default-value="168"
+     */
+    protected int describeCacheMaxAge;
+
+    /**
+     * Maximum size in megabytes of the describe cache
+     * @parameter expression="${describeCacheMaxSize}" default-value="256"
+     */
+    protected int describeCacheMaxSize;
+
+    /**
+     * Salesforce API call budget for the build, either a percentage of the org's daily API limit, like 10%,
+     * or a number of API calls, like 500. Requests are slowed down as the budget is approached,
+     * and the build fails when it is used up. Empty for no budget
+     * @parameter expression="${apiCallBudget}"
+     */
+    protected String apiCallBudget;
+
+    /**
+     * Timeout in milliseconds for connecting to Salesforce
+     * @parameter expression="${connectTimeout}" default-value="10000"
+     */
+    protected int connectTimeout;
+
+    /**
+     * Timeout in milliseconds waiting for a response, and between parts of a response
+     * @parameter expression="${readTimeout}" default-value="30000"
+     */
+    protected int readTimeout;
+
+    /**
+     * Overall deadline in milliseconds for a metadata request, including retries and reading the response
+     * @parameter expression="${requestDeadline}" default-value="120000"
+     */
+    protected int requestDeadline;
+
+    /**
+     * Maximum retries of metadata GET requests after connection failures, timeouts and transient server errors.
+     * Logins after an expired session and request limit backoffs are not counted. Failures while reading
+     * the content of a successful response are not retried
+     * @parameter expression="${maxRetries}" default-value="3"
+     */
+    protected int maxRetries;
+
+    /**
+     * Delay in milliseconds before the first retry, doubled with random jitter for every further retry
+     * @parameter expression="${retryBackoff}" default-value="500"
+     */
+    protected int retryBackoff;
+
+    /**
+     * Request gzip compressed metadata responses
+     * @parameter expression="${compressResponses}" default-value="true"
+     */
+    protected boolean compressResponses;
+
+    /**
+     * Reuse OAuth sessions across builds, by caching access tokens in tokenCacheDirectory
+     * @parameter expression="${tokenCache}" default-value="false"
+     */
+    protected boolean tokenCache;
+
+    /**
+     * Directory for cached OAuth sessions, only readable by the owner
+     * @parameter expression="${tokenCacheDirectory}" default-value="${user.home}/.camel-salesforce/tokens"
+     */
+    protected File tokenCacheDirectory;
+
+    /**
+     * Share the Salesforce session, getGlobalObjects response and SObject descriptions with other executions
+     * in the same JVM for the same login, version and connection settings, like other modules of a reactor build.
+     * The session is closed when no execution is using it, shared metadata is kept in memory until the next build
+     * @parameter expression="${shareMetadata}" default-value="false"
+     */
+    protected boolean shareMetadata;
+
+    /**
+     * Start time of the Maven session, keeps metadata shared by different builds in one JVM apart
+     * @parameter default-value="${session.startTime}"
+     * @readonly
+     */
+    protected Date sessionStartTime;
+
+    private SharedMetadata sharedMetadata;
+
+    protected void validateFetchStrategy() throws MojoExecutionException {
+        if (!FETCH_DESCRIBE.equals(fetchStrategy) && !FETCH_BATCH.equals(fetchStrategy)) {
+            throw new MojoExecutionException("Invalid fetchStrategy " + fetchStrategy);
+        }
+    }
+
+    /**
+     * Logs in to Salesforce.
+     * @return open connection, which must be closed after use
+     * @throws MojoExecutionException on missing login properties or login errors
+     */
+    protected SalesforceConnection connect() throws MojoExecutionException {
+        // login properties are only required when connecting to Salesforce
+        if (clientId == null || clientSecret == null || userName == null || password == null) {
+            throw new MojoExecutionException(
+                "Properties clientId, clientSecret, userName and password are required, unless a snapshot is used");
+        }
+        if (!shareMetadata) {
+            return open();
+        }
+
+        sharedMetadata = SharedMetadata.get(sessionStartTime != null ? String.valueOf(sessionStartTime.getTime()) : "",
+            SalesforceLoginConfig.DEFAULT_LOGIN_URL, userName, version, getConnectionSettings());
+        try {
+            return sharedMetadata.getConnection(new Callable<SalesforceConnection>() {
+                public SalesforceConnection call() throws Exception {
+                    return open();
+                }
+            });
+        } catch (MojoExecutionException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new MojoExecutionException("Error opening shared Salesforce connection: " + e.getMessage(), e);
+        }
+    }
+
+    // settings a connection keeps for its lifetime, executions only share connections with the same settings
+    private String getConnectionSettings() {
+        return String.format("clientId=%s,connectTimeout=%s,readTimeout=%s,apiCallBudget=%s,describeConcurrency=%s,"
+            + "maxRetries=%s,retryBackoff=%s,requestDeadline=%s,compressResponses=%s,tokenCache=%s",
+            clientId, connectTimeout, readTimeout, apiCallBudget, describeConcurrency,
+            maxRetries, retryBackoff, requestDeadline, compressResponses, tokenCache ? tokenCacheDirectory : null);
+    }
+
+    private SalesforceConnection open() throws MojoExecutionException {
+        final ApiLimitThrottle throttle;
+        try {
+            throttle = new ApiLimitThrottle(apiCallBudget, describeConcurrency, getLog());
+        } catch (IllegalArgumentException e) {
+            throw new MojoExecutionException(e.getMessage(), e);
+        }
+        final SalesforceConnection connection = SalesforceConnection.open(
+            new SalesforceLoginConfig(SalesforceLoginConfig.DEFAULT_LOGIN_URL,
+                clientId, clientSecret, userName, password, false), version, connectTimeout, readTimeout,
+            tokenCache ? new TokenCache(tokenCacheDirectory, getLog()) : null, getLog());
+        connection.getMetadataClient().setThrottle(throttle);
+        connection.getMetadataClient().setRetryPolicy(new RetryPolicy(maxRetries, retryBackoff, requestDeadline));
+        connection.getMetadataClient().setCompression(compressResponses);
+        return connection;
+    }
+
+    /**
+     * Logs the number of API calls used and request statistics, and closes the connection,
+     * or releases it if it is shared. A shared connection is closed by the last execution using it,
+     * and its statistics include requests made by other executions.
+     * @param connection Salesforce connection
+     */
+    protected void disconnect(SalesforceConnection connection) {
+        final MetadataRestClient metadataClient = connection.getMetadataClient();
+        final ApiLimitThrottle throttle = metadataClient.getThrottle();
+        if (throttle != null) {
+            getLog().info("Salesforce API: " + throttle.getStatistics());
+        }
+        final RequestStatistics statistics = metadataClient.getStatistics();
+        if (statistics.getRequests() > 0) {
+            getLog().info("Metadata requests: " + statistics.getStatistics());
+            getLog().info("Metadata responses: " + metadataClient.getTransferStatistics());
+            getLog().info("Slowest requests: " + statistics.getSlowest(5));
+            for (RequestStatistics.Entry entry : statistics.getRetried()) {
+                getLog().warn("Retried request: " + entry);
+            }
+        }
+        if (sharedMetadata == null) {
+            connection.close();
+        } else if (sharedMetadata.release()) {
+            getLog().debug("Closed shared Salesforce connection");
+        }
+    }
+
+    /**
+     * Gets the raw getGlobalObjects response.
+     * @param connection Salesforce connection
+     * @return getGlobalObjects response
+     * @throws MojoExecutionException on error
+     */
+    protected byte[] getGlobalObjects(final SalesforceConnection connection) throws MojoExecutionException {
+        try {
+            if (sharedMetadata != null) {
+                return sharedMetadata.getGlobalObjects(new Callable<byte[]>() {
+                    public byte[] call() throws Exception {
+                        getLog().info("Getting Salesforce Objects...");
+                        return connection.getMetadataClient().getGlobalObjects().getContent();
+                    }
+                });
+            }
+            getLog().info("Getting Salesforce Objects...");
+            return connection.getMetadataClient().getGlobalObjects().getContent();
+        } catch (Exception e) {
+            String msg = "Error getting global Objects " + e.getMessage();
+            throw new MojoExecutionException(msg, e);
+        }
+    }
+
+    /**
+     * Gets the names of Objects to describe, calling getGlobalObjects only if Objects are selected by pattern
+     * or all Objects are included.
+     * @param connection Salesforce connection
+     * @param mapper Jackson mapper
+     * @return filtered Object names
+     * @throws MojoExecutionException on error
+     */
+    protected Set<String> getObjectNames(SalesforceConnection connection, ObjectMapper mapper)
+        throws MojoExecutionException {
+
+        final SObjectFilter objectFilter = createObjectFilter();
+        if (!RequestPlan.isGlobalObjectsRequired(includes, includePattern, objectFilter)) {
+            getLog().info("Describing included Objects directly, without getting all Salesforce Objects");
+            final Set<String> objectNames = new TreeSet<String>();
+            for (String name : includes) {
+                if (objectFilter.acceptName(name.trim())) {
+                    objectNames.add(name.trim());
+                }
+            }
+            filterObjectNames(objectNames);
+            return objectNames;
+        }
+
+        try {
+            return selectObjectNames(mapper.readValue(getGlobalObjects(connection), GlobalObjects.class));
+        } catch (IOException e) {
+            String msg = "Error getting global Objects " + e.getMessage();
+            throw new MojoExecutionException(msg, e);
+        }
+    }
+
+    /**
+     * Applies attribute, suffix and name filters to global Objects.
+     * @param globalObjects getGlobalObjects response
+     * @return accepted Object names
+     * @throws MojoExecutionException on invalid filter configuration
+     */
+    protected Set<String> selectObjectNames(GlobalObjects globalObjects) throws MojoExecutionException {
+        final SObjectFilter objectFilter = createObjectFilter();
+        // sorted, so Objects are always described and generated in the same order
+        final Set<String> objectNames = new TreeSet<String>();
+        int rejected = 0;
+        for (SObject sObject : globalObjects.getSobjects()) {
+            if (objectFilter.accept(sObject)) {
+                objectNames.add(sObject.getName());
+            } else {
+                rejected++;
+            }
+        }
+        if (!objectFilter.isEmpty()) {
+            getLog().info(String.format("Skipping %s Objects by objectAttributes and excludeSuffixes", rejected));
+        }
+
+        filterObjectNames(objectNames);
+        return objectNames;
+    }
+
+    protected SObjectFilter createObjectFilter() throws MojoExecutionException {
+        return new SObjectFilter(objectAttributes, excludeSuffixes);
+    }
+
+    /**
+     * Creates a fetcher for the configured fetch strategy, concurrency and describe cache.
+     * @param connection Salesforce connection
+     * @param mapper Jackson mapper
+     * @return description fetcher
+     * @throws MojoExecutionException on error
+     */
+    protected DescriptionFetcher createFetcher(SalesforceConnection connection, ObjectMapper mapper)
+        throws MojoExecutionException {
+
+        final MetadataRestClient metadataClient = connection.getMetadataClient();
+        final DescriptionFetcher fetcher;
+        if (FETCH_BATCH.equals(fetchStrategy)) {
+            fetcher = new BatchDescriptionFetcher(metadataClient, mapper, describeConcurrency, getLog());
+        } else {
+            fetcher = new DescriptionFetcher(metadataClient, mapper, describeConcurrency, getLog());
+        }
+        fetcher.setSharedMetadata(sharedMetadata);
+        // included names described directly are not checked against getGlobalObjects, skip unknown names
+        fetcher.setSkipNotFound(!RequestPlan.isGlobalObjectsRequired(includes, includePattern, createObjectFilter()));
+        if (!skipDescribeCache) {
+            fetcher.setCache(createDescriptionCache(metadataClient));
+        }
+        return fetcher;
+    }
+
+    protected void logStatistics(DescriptionFetcher fetcher) {
+        if (fetcher.getParser().getObjectsParsed() > 0) {
+            getLog().info("Describe responses: " + fetcher.getParser().getStatistics());
+        }
+        if (fetcher.getCache() != null) {
+            getLog().info("Describe cache: " + fetcher.getCache().getStatistics());
+        }
+    }
+
+    protected DescriptionCache createDescriptionCache(MetadataRestClient metadataClient) throws MojoExecutionException {
+        final String orgId;
+        try {
+            orgId = metadataClient.getOrgId();
+        } catch (SalesforceException e) {
+            throw new MojoExecutionException("Error getting Salesforce org id: " + e.getMessage(), e);
+        }
+        final DescriptionCache cache = new DescriptionCache(describeCacheDirectory, orgId, version,
+            TimeUnit.HOURS.toMillis(describeCacheMaxAge), describeCacheMaxSize * 1024L * 1024L, getLog());
+        if (isDryRun()) {
+            // dry runs only look up cached entries to plan requests
+            return cache;
+        }
+        cache.evict();
+        getLog().info("Using describe cache " + cache.getDirectory());
+        return cache;
+    }
+
+    /**
+     * Returns whether the goal only plans metadata requests, without side effects like describe cache eviction.
+     */
+    protected boolean isDryRun() {
+        return false;
+    }
+
+    /**
+     * Applies includes, excludes, includePattern and excludePattern to Object names.
+     * @param objectNames all Object names, replaced with accepted names
+     * @throws MojoExecutionException on invalid filter configuration
+     */
+    protected void filterObjectNames(Set<String> objectNames) throws MojoExecutionException {
+        // check if we are generating POJOs for all objects or not
+        if ((includes != null && includes.length > 0) ||
+            (excludes != null && excludes.length > 0) ||
+            (includePattern != null && !includePattern.trim().isEmpty()) ||
+            (excludePattern != null && !excludePattern.trim().isEmpty())) {
+
+            getLog().info("Looking for matching Object names...");
+            // create a list of accepted names
+            final Set<String> includedNames = new HashSet<String>();
+            if (includes != null && includes.length > 0) {
+                for (String name : includes) {
+                    name = name.trim();
+                    if (name.isEmpty()) {
+                        throw new MojoExecutionException("Invalid empty name in includes");
+                    }
+                    includedNames.add(name);
+                }
+            }
+
+            final Set<String> excludedNames = new HashSet<String>();
+            if (excludes != null && excludes.length > 0) {
+                for (String name : excludes) {
+                    name = name.trim();
+                    if (name.isEmpty()) {
+                        throw new MojoExecutionException("Invalid empty name in excludes");
+                    }
+                    excludedNames.add(name);
+                }
+            }
+
+            // check whether a pattern is in effect
+            Pattern incPattern;
+            if (includePattern != null && !includePattern.trim().isEmpty()) {
+                incPattern = Pattern.compile(includePattern.trim());
+            } else if (includedNames.isEmpty()) {
+                // include everything by default if no include names are set
+                incPattern = Pattern.compile(".*");
+            } else {
+                // include nothing by default if include names are set
+                incPattern = Pattern.compile("^$");
+            }
+
+            // check whether a pattern is in effect
+            Pattern excPattern;
+            if (excludePattern != null && !excludePattern.trim().isEmpty()) {
+                excPattern = Pattern.compile(excludePattern.trim());
+            } else {
+                // exclude nothing by default
+                excPattern = Pattern.compile("^$");
+            }
+
+            final Set<String> acceptedNames = new HashSet<String>();
+            for (String name : objectNames) {
+                // name is included, or matches include pattern
+                // and is not excluded and does not match exclude pattern
+                if ((includedNames.contains(name) || incPattern.matcher(name).matches()) &&
+                    !excludedNames.contains(name) &&
+                    !excPattern.matcher(name).matches()) {
+                    acceptedNames.add(name);
+                }
+            }
+            objectNames.clear();
+            objectNames.addAll(acceptedNames);
+
+            getLog().info(String.format("Found %s matching Objects", objectNames.size()));
+
+        } else {
+            getLog().warn(String.format("Generating Java classes for all %s Objects, this may take a while...",
+                objectNames.size()));
+        }
+    }
+}
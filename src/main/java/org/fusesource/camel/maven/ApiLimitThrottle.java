@@ -0,0 +1,233 @@
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.camel.maven;
+
+import org.apache.maven.plugin.logging.Log;
+import org.fusesource.camel.component.salesforce.api.SalesforceException;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps metadata requests within an API call budget, using the org usage reported by Salesforce
+ * in the {@code Sforce-Limit-Info} response header.
+ * The budget is either a percentage of the org's daily API limit, like {@code 10%},
+ * or an absolute number of calls for the build, like {@code 500}. A percentage budget is measured
+ * against the org usage reported with the first response, so calls made before the build do not count.
+ * After Salesforce rejects a request for exceeding the limit, requests are sent one at a time
+ * until a cool-down period has passed.
+ * As org usage approaches the budget, requests in flight are reduced and spaced out,
+ * and once the budget is used up requests fail instead of eating into the org's limit.
+ */
+public class ApiLimitThrottle {
+
+    private static final Pattern API_USAGE = Pattern.compile("api-usage=(\\d+)/(\\d+)");
+
+    // fractions of the budget at which requests are slowed down
+    private static final double SLOW_DOWN = 0.75;
+    private static final double CRAWL = 0.9;
+    private static final long SLOW_DOWN_INTERVAL = 200;
+    private static final long CRAWL_INTERVAL = 1000;
+    private static final long MAX_BACKOFF = 60000;
+    private static final long BACKOFF_COOL_DOWN = 60000;
+
+    private final int maxConcurrency;
+    private final double budgetPercent;
+    private final long budgetCalls;
+    private final Log log;
+
+    private int concurrency;
+    private long minInterval;
+    private int inFlight;
+    private long lastRequest;
+    private long calls;
+    private long orgUsed = -1;
+    private long orgLimit = -1;
+    private long startUsed = -1;
+    private long coolDownEnd;
+
+    /**
+     * Creates a throttle.
+     * @param budget percentage of the org's daily limit, like {@code 10%}, or number of API calls,
+     * null or empty for no budget
+     * @param maxConcurrency maximum requests in flight
+     * @param log Maven log
+     * @throws IllegalArgumentException on an invalid budget
+     */
+    public ApiLimitThrottle(String budget, int maxConcurrency, Log log) {
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        this.concurrency = this.maxConcurrency;
+        this.log = log;
+
+        double percent = -1;
+        long absolute = -1;
+        if (budget != null && !budget.trim().isEmpty()) {
+            final String value = budget.trim();
+            try {
+                if (value.endsWith("%")) {
+                    percent = Double.parseDouble(value.substring(0, value.length() - 1).trim());
+                } else {
+                    absolute = Long.parseLong(value);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid apiCallBudget " + budget);
+            }
+            if ((percent != -1 && (percent <= 0 || percent > 100)) || (absolute != -1 && absolute <= 0)) {
+                throw new IllegalArgumentException("Invalid apiCallBudget " + budget);
+            }
+        }
+        this.budgetPercent = percent;
+        this.budgetCalls = absolute;
+    }
+
+    /**
+     * Waits for a request slot, and the minimum interval between requests.
+     * @throws SalesforceException if the budget is used up, or if interrupted
+     */
+    public synchronized void acquire() throws SalesforceException {
+        try {
+            while (true) {
+                checkBudget();
+                final long wait = lastRequest + minInterval - System.currentTimeMillis();
+                if (inFlight < concurrency && wait <= 0) {
+                    break;
+                }
+                wait(wait > 0 ? wait : 0);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SalesforceException("Interrupted waiting for API call budget", e);
+        }
+        inFlight++;
+        calls++;
+        lastRequest = System.currentTimeMillis();
+    }
+
+    public synchronized void release() {
+        inFlight--;
+        notifyAll();
+    }
+
+    /**
+     * Updates org usage from a {@code Sforce-Limit-Info} header, like {@code api-usage=25/15000},
+     * and adjusts concurrency and request rate.
+     * @param limitInfo header value, may be null
+     */
+    public synchronized void update(String limitInfo) {
+        if (limitInfo == null) {
+            return;
+        }
+        final Matcher matcher = API_USAGE.matcher(limitInfo);
+        if (!matcher.find()) {
+            return;
+        }
+        orgUsed = Long.parseLong(matcher.group(1));
+        orgLimit = Long.parseLong(matcher.group(2));
+        if (startUsed == -1) {
+            // usage reported with the first response includes that request
+            startUsed = orgUsed - 1;
+        }
+
+        final double used = getBudgetUsed();
+        final int previous = concurrency;
+        if (used >= CRAWL) {
+            concurrency = 1;
+            minInterval = CRAWL_INTERVAL;
+        } else if (used >= SLOW_DOWN) {
+            concurrency = Math.max(1, maxConcurrency / 2);
+            minInterval = SLOW_DOWN_INTERVAL;
+        } else {
+            concurrency = maxConcurrency;
+            minInterval = 0;
+        }
+        if (System.currentTimeMillis() < coolDownEnd) {
+            // still cooling down after the request limit was exceeded
+            concurrency = 1;
+            minInterval = Math.max(minInterval, CRAWL_INTERVAL);
+        }
+        if (concurrency < previous) {
+            log.warn(String.format("API usage %s/%s is close to the budget, reducing requests in flight to %s",
+                orgUsed, orgLimit, concurrency));
+        }
+        notifyAll();
+    }
+
+    /**
+     * Backs off exponentially after Salesforce rejected a request with {@code REQUEST_LIMIT_EXCEEDED},
+     * and sends further requests one at a time until a cool-down period after the backoff has passed.
+     * @param attempt retry attempt, starting with 1
+     * @param message Salesforce error message
+     * @throws SalesforceException if interrupted while waiting
+     */
+    public void backoff(int attempt, String message) throws SalesforceException {
+        final long delay = Math.min(MAX_BACKOFF, 1000L << Math.min(attempt, 16));
+        synchronized (this) {
+            concurrency = 1;
+            minInterval = Math.max(minInterval, CRAWL_INTERVAL);
+            coolDownEnd = System.currentTimeMillis() + delay + BACKOFF_COOL_DOWN;
+        }
+        log.warn(String.format("Request limit exceeded, retrying in %s ms: %s", delay, message));
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SalesforceException("Interrupted while backing off from request limit", e);
+        }
+    }
+
+    /**
+     * Returns the maximum number of requests currently allowed in flight.
+     */
+    public synchronized int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * Returns the number of API calls made through this throttle.
+     */
+    public synchronized long getCalls() {
+        return calls;
+    }
+
+    public synchronized String getStatistics() {
+        if (orgLimit == -1) {
+            return String.format("%s API calls used", calls);
+        }
+        return String.format("%s API calls used, org usage %s/%s (%s at start)",
+            calls, orgUsed, orgLimit, startUsed);
+    }
+
+    // fraction of the budget used so far, 0 when there is no budget
+    private double getBudgetUsed() {
+        if (budgetCalls != -1) {
+            return (double) calls / budgetCalls;
+        }
+        if (budgetPercent != -1 && orgLimit > 0) {
+            // calls made in the org since this build started
+            return (orgUsed - startUsed) / (orgLimit * budgetPercent / 100);
+        }
+        return 0;
+    }
+
+    private void checkBudget() throws SalesforceException {
+        if (getBudgetUsed() >= 1) {
+            final String budget = budgetCalls != -1 ? budgetCalls + " calls" : budgetPercent + "% of the daily limit";
+            throw new SalesforceException(String.format("API call budget of %s used up, %s",
+                budget, getStatistics()), 0);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.camel.maven;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+import java.lang.reflect.Method;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Matches Salesforce DTOs against required attribute values, like queryable=true or calculated=false.
+ * Attributes are read through the DTO getters, and values are compared as case insensitive strings.
+ */
+public class AttributeMatcher<T> {
+
+    private final Map<Method, String> attributes = new LinkedHashMap<Method, String>();
+
+    /**
+     * Creates a matcher.
+     * @param type DTO type
+     * @param attributes required values by attribute name, may be null
+     * @throws MojoExecutionException if the DTO has no such attribute
+     */
+    public AttributeMatcher(Class<T> type, Map<String, String> attributes) throws MojoExecutionException {
+        if (attributes != null) {
+            for (Map.Entry<String, String> entry : attributes.entrySet()) {
+                final String value = entry.getValue() != null ? entry.getValue().trim() : "";
+                this.attributes.put(getAccessor(type, entry.getKey().trim()), value);
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        return attributes.isEmpty();
+    }
+
+    /**
+     * Returns whether all attributes have the required values.
+     * @param dto DTO
+     * @param name DTO name for error messages
+     * @throws MojoExecutionException if an attribute can not be read
+     */
+    public boolean matches(T dto, String name) throws MojoExecutionException {
+        for (Map.Entry<Method, String> entry : attributes.entrySet()) {
+            final Object value;
+            try {
+                value = entry.getKey().invoke(dto);
+            } catch (Exception e) {
+                throw new MojoExecutionException("Error reading " + entry.getKey().getName() + " of "
+                    + name + ": " + e.getMessage(), e);
+            }
+            if (!entry.getValue().equalsIgnoreCase(String.valueOf(value))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // returns the getter for an attribute, like getQueryable or isQueryable for queryable
+    private static Method getAccessor(Class<?> type, String attribute) throws MojoExecutionException {
+        if (!attribute.isEmpty()) {
+            final String suffix = Character.toUpperCase(attribute.charAt(0)) + attribute.substring(1);
+            for (String prefix : new String[] { "get", "is" }) {
+                try {
+                    return type.getMethod(prefix + suffix);
+                } catch (NoSuchMethodException ignore) {
+                }
+            }
+        }
+        throw new MojoExecutionException(String.format("Unknown %s attribute %s", type.getSimpleName(), attribute));
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.camel.maven;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.node.ArrayNode;
+import org.codehaus.jackson.node.ObjectNode;
+import org.fusesource.camel.component.salesforce.api.SalesforceException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Retrieves SObject descriptions with Composite Batch requests, packing up to
+ * {@link #MAX_BATCH_SIZE} describe subrequests in every HTTP call.
+ * Falls back to describing every SObject separately if the API version or org does not support batching.
+ * Cached descriptions are requested in batches like the others, since subrequests can't be conditional,
+ * and cache entries are only replaced when the batch result differs. Entries get the Last-Modified date
+ * of their subresponse if the batch result includes it, otherwise they have none, so that the
+ * describe fetch strategy requests them unconditionally.
+ */
+public class BatchDescriptionFetcher extends DescriptionFetcher {
+
+    // maximum number of subrequests allowed in a Composite Batch request
+    static final int MAX_BATCH_SIZE = 25;
+
+    public BatchDescriptionFetcher(MetadataRestClient metadataClient, ObjectMapper mapper, int concurrency, Log log) {
+        super(metadataClient, mapper, concurrency, log);
+    }
+
+    @Override
+    public int getPlannedRequests(Collection<String> objectNames) {
+        if (!metadataClient.isBatchSupported()) {
+            return objectNames.size();
+        }
+        return (objectNames.size() + MAX_BATCH_SIZE - 1) / MAX_BATCH_SIZE;
+    }
+
+    @Override
+    protected void doFetch(Collection<String> objectNames, final ResponseHandler handler)
+        throws MojoExecutionException {
+        if (!metadataClient.isBatchSupported()) {
+            log.warn(String.format("Composite Batch is not supported in API version %s, describing Objects one at a time",
+                metadataClient.getVersion()));
+            super.doFetch(objectNames, handler);
+            return;
+        }
+
+        // cached descriptions are batched too, and revalidated by comparing them with the batch results
+        final List<List<String>> batches = new ArrayList<List<String>>();
+        List<String> batch = null;
+        for (String name : objectNames) {
+            if (batch == null || batch.size() == MAX_BATCH_SIZE) {
+                batch = new ArrayList<String>(MAX_BATCH_SIZE);
+                batches.add(batch);
+            }
+            batch.add(name);
+        }
+        if (batches.isEmpty()) {
+            return;
+        }
+        log.info(String.format("Retrieving %s Object descriptions in %s batches...",
+            objectNames.size(), batches.size()));
+
+        // send the first batch alone, to check whether the org supports batching
+        try {
+            describeBatch(batches.get(0), handler);
+        } catch (BatchNotSupportedException e) {
+            log.warn("Composite Batch is not supported by this org, describing Objects one at a time");
+            super.doFetch(objectNames, handler);
+            return;
+        }
+
+        final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (final List<String> names : batches.subList(1, batches.size())) {
+            tasks.add(new Callable<Void>() {
+                public Void call() throws Exception {
+                    describeBatch(names, handler);
+                    return null;
+                }
+            });
+        }
+        execute(tasks);
+    }
+
+    private void describeBatch(List<String> names, ResponseHandler handler)
+        throws MojoExecutionException, BatchNotSupportedException {
+
+        final ObjectNode request = mapper.createObjectNode();
+        final ArrayNode batchRequests = request.putArray("batchRequests");
+        for (String name : names) {
+            final ObjectNode subRequest = batchRequests.addObject();
+            subRequest.put("method", "GET");
+            subRequest.put("url", metadataClient.describePath(name));
+        }
+
+        final JsonNode results;
+        try {
+            final byte[] response = metadataClient.batch(mapper.writeValueAsBytes(request));
+            results = mapper.readTree(response).get("results");
+        } catch (SalesforceException e) {
+            if (e.getStatusCode() == SC_NOT_FOUND) {
+                throw new BatchNotSupportedException();
+            }
+            throw new MojoExecutionException("Error describing SObjects " + names + ": " + e.getMessage(), e);
+        } catch (Exception e) {
+            throw new MojoExecutionException("Error describing SObjects " + names + ": " + e.getMessage(), e);
+        }
+        if (results == null || results.size() != names.size()) {
+            throw new MojoExecutionException("Unexpected Composite Batch response for SObjects " + names);
+        }
+
+        // subresponses are returned in the same order as subrequests
+        for (int i = 0; i < names.size(); i++) {
+            final String name = names.get(i);
+            final JsonNode result = results.get(i);
+            final int statusCode = result.path("statusCode").getIntValue();
+            if (statusCode != 200 && isSkipped(name, statusCode)) {
+                continue;
+            }
+            if (statusCode != 200) {
+                throw new MojoExecutionException(String.format("Error getting SObject description for %s: %s %s",
+                    name, statusCode, result.path("result")));
+            }
+            final byte[] content;
+            try {
+                content = mapper.writeValueAsBytes(result.get("result"));
+                if (cache != null) {
+                    updateCache(name, result.get("result"), content, getLastModified(result));
+                }
+            } catch (Exception e) {
+                throw new MojoExecutionException(
+                    "Error reading SObject description for " + name + ": " + e.getMessage(), e);
+            }
+            handle(handler, name, new ByteArrayInputStream(content));
+        }
+    }
+
+    // keeps unchanged cache entries, and replaces changed ones
+    private void updateCache(String name, JsonNode description, byte[] content, String lastModified)
+        throws IOException {
+        final DescriptionCache.Entry entry = cache.get(name);
+        if (entry != null) {
+            final InputStream in = entry.openStream();
+            try {
+                if (description.equals(mapper.readTree(in))) {
+                    cache.touch(name);
+                    return;
+                }
+            } finally {
+                in.close();
+            }
+        }
+        cache.put(name, content, lastModified);
+    }
+
+    // Last-Modified header of a subresponse, if the batch result includes subresponse headers
+    private static String getLastModified(JsonNode result) {
+        final JsonNode lastModified = result.path("httpHeaders").get("Last-Modified");
+        return lastModified != null ? lastModified.getTextValue() : null;
+    }
+
+    private static class BatchNotSupportedException extends Exception {
+    }
+}
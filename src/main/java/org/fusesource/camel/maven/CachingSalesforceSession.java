@@ -0,0 +1,91 @@
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.camel.maven;
+
+import org.apache.maven.plugin.logging.Log;
+import org.eclipse.jetty.client.HttpClient;
+import org.fusesource.camel.component.salesforce.SalesforceLoginConfig;
+import org.fusesource.camel.component.salesforce.api.SalesforceException;
+import org.fusesource.camel.component.salesforce.internal.SalesforceSession;
+
+/**
+ * {@link SalesforceSession} that reuses an access token from a {@link TokenCache} instead of logging in.
+ * A cached token is not checked up front, the first request made with it revalidates it,
+ * and a 401 response leads to a new login through {@link #login(String)}, which refreshes the cache.
+ */
+public class CachingSalesforceSession extends SalesforceSession {
+
+    private final TokenCache tokenCache;
+    private final String loginUrl;
+    private final String clientId;
+    private final String userName;
+    private final Log log;
+
+    private String accessToken;
+    private String instanceUrl;
+
+    public CachingSalesforceSession(HttpClient httpClient, SalesforceLoginConfig loginConfig,
+                                    TokenCache tokenCache, Log log) {
+        super(httpClient, loginConfig);
+        this.tokenCache = tokenCache;
+        this.loginUrl = loginConfig.getLoginUrl();
+        this.clientId = loginConfig.getClientId();
+        this.userName = loginConfig.getUserName();
+        this.log = log;
+    }
+
+    @Override
+    public synchronized String login(String oldToken) throws SalesforceException {
+        // token is still valid, or was already refreshed by another request
+        if (accessToken != null && !accessToken.equals(oldToken)) {
+            return accessToken;
+        }
+
+        if (oldToken == null) {
+            final String[] cached = tokenCache.get(loginUrl, clientId, userName);
+            if (cached != null) {
+                log.info("Using cached Salesforce session");
+                accessToken = cached[0];
+                instanceUrl = cached[1];
+                return accessToken;
+            }
+        } else {
+            log.info("Salesforce session expired, logging in again...");
+            tokenCache.remove(loginUrl, clientId, userName);
+        }
+
+        // passing the current token forces a new login
+        accessToken = super.login(super.getAccessToken());
+        instanceUrl = super.getInstanceUrl();
+        tokenCache.put(loginUrl, clientId, userName, accessToken, instanceUrl);
+        return accessToken;
+    }
+
+    @Override
+    public synchronized String getAccessToken() {
+        return accessToken;
+    }
+
+    @Override
+    public synchronized String getInstanceUrl() {
+        return instanceUrl;
+    }
+
+    @Override
+    public void stop() throws Exception {
+        // do not log out, the cached token is reused by the next build
+    }
+}
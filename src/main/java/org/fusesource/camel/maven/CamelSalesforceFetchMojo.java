@@ -0,0 +1,104 @@
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.camel.maven;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.fusesource.camel.component.salesforce.api.SalesforceException;
+import org.fusesource.camel.component.salesforce.api.dto.GlobalObjects;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Date;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Goal which fetches Salesforce metadata into a snapshot file,
+ * for generating POJOs offline with the generate goal.
+ *
+ * @goal fetch
+ *
+ */
+public class CamelSalesforceFetchMojo extends AbstractSalesforceMojo
+{
+    /**
+     * Metadata snapshot file to create
+     * @parameter expression="${snapshot}" default-value="${project.build.directory}/salesforce-metadata.zip"
+     * @required
+     */
+    protected File snapshot;
+
+    /**
+     * Execute the mojo to fetch a metadata snapshot
+     * @throws MojoExecutionException
+     */
+    public void execute()
+        throws MojoExecutionException
+    {
+        validateFetchStrategy();
+
+        // use Jackson json
+        final ObjectMapper mapper = new ObjectMapper();
+
+        final SalesforceConnection connection = connect();
+        MetadataSnapshotWriter writer = null;
+        try {
+            writer = new MetadataSnapshotWriter(snapshot);
+
+            // write all global objects, so any filter can be used when generating
+            final byte[] globalObjectsContent = getGlobalObjects(connection);
+            writer.writeGlobalObjects(globalObjectsContent);
+
+            final Set<String> objectNames = selectObjectNames(
+                mapper.readValue(globalObjectsContent, GlobalObjects.class));
+
+            // stream descriptions to the snapshot as they arrive
+            getLog().info("Retrieving Object descriptions...");
+            final DescriptionFetcher fetcher = createFetcher(connection, mapper);
+            final MetadataSnapshotWriter snapshotWriter = writer;
+            fetcher.fetch(objectNames, new DescriptionFetcher.ResponseHandler() {
+                public void handle(String objectName, InputStream content) throws Exception {
+                    snapshotWriter.writeDescription(objectName, content);
+                }
+            });
+            logStatistics(fetcher);
+
+            final Properties properties = new Properties();
+            properties.setProperty(MetadataSnapshot.API_VERSION_PROPERTY, version);
+            properties.setProperty(MetadataSnapshot.ORG_ID_PROPERTY, connection.getMetadataClient().getOrgId());
+            properties.setProperty(MetadataSnapshot.CREATED_PROPERTY, new Date().toString());
+            writer.close(properties);
+
+            getLog().info(String.format(
+                "Successfully fetched %s Object descriptions into %s (%s KB uncompressed, %s KB compressed)",
+                writer.getDescriptionCount(), snapshot, writer.getUncompressedSize() / 1024, snapshot.length() / 1024));
+            writer = null;
+
+        } catch (IOException e) {
+            throw new MojoExecutionException("Error writing snapshot " + snapshot + ": " + e.getMessage(), e);
+        } catch (SalesforceException e) {
+            throw new MojoExecutionException("Error getting Salesforce org id: " + e.getMessage(), e);
+        } finally {
+            if (writer != null) {
+                writer.abort();
+            }
+            disconnect(connection);
+        }
+    }
+}
@@ -17,7 +17,6 @@
 package org.fusesource.camel.maven;
 
 import org.apache.log4j.Logger;
-import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.velocity.Template;
 import org.apache.velocity.VelocityContext;
@@ -26,24 +25,23 @@ import org.apache.velocity.runtime.RuntimeConstants;
 import org.apache.velocity.runtime.log.Log4JLogChute;
 import org.apache.velocity.runtime.resource.loader.ClasspathResourceLoader;
 import org.codehaus.jackson.map.ObjectMapper;
-import org.eclipse.jetty.client.HttpClient;
-import org.eclipse.jetty.client.RedirectListener;
-import org.fusesource.camel.component.salesforce.SalesforceLoginConfig;
-import org.fusesource.camel.component.salesforce.api.SalesforceException;
 import org.fusesource.camel.component.salesforce.api.dto.*;
-import org.fusesource.camel.component.salesforce.internal.SalesforceSession;
-import org.fusesource.camel.component.salesforce.internal.client.DefaultRestClient;
-import org.fusesource.camel.component.salesforce.internal.client.RestClient;
-import org.fusesource.camel.component.salesforce.internal.client.SyncResponseCallback;
 
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
 import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.net.URISyntaxException;
+import java.security.CodeSource;
+import java.security.DigestInputStream;
+import java.text.SimpleDateFormat;
 import java.util.*;
-import java.util.concurrent.TimeUnit;
-import java.util.regex.Pattern;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
 
 /**
  * Goal which generates POJOs for Salesforce SObjects
@@ -53,91 +51,171 @@ import java.util.regex.Pattern;
  * @phase generate-sources
  *
  */
-public class CamelSalesforceMojo extends AbstractMojo
+public class CamelSalesforceMojo extends AbstractSalesforceMojo
 {
     private static final String JAVA_EXT = ".java";
     private static final String PACKAGE_NAME_PATTERN = "^[a-z]+(\\.[a-z][a-z0-9]*)*$";
     private static final String SOBJECT_POJO_VM = "/sobject-pojo.vm";
     private static final String SOBJECT_QUERY_RECORDS_VM = "/sobject-query-records.vm";
     private static final String SOBJECT_PICKLIST_VM = "/sobject-picklist.vm";
+    private static final String SOBJECT_PICKLIST_OPEN_VM = "/sobject-picklist-open.vm";
+    private static final String SOBJECT_JSON_VM = "/sobject-json.vm";
+    private static final String SOBJECT_JSON_MODULE_VM = "/sobject-json-module.vm";
+    private static final String JSON_MODULE_NAME = "SObjectJsonModule";
+    private static final String SOBJECT_XML_CONVERTER_VM = "/sobject-xml-converter.vm";
+    private static final String SOBJECT_XSTREAM_SETUP_VM = "/sobject-xstream-setup.vm";
+    private static final String XSTREAM_SETUP_NAME = "SObjectXStreamSetup";
+    private static final String SOURCE_DATE_EPOCH = "SOURCE_DATE_EPOCH";
+    private static final String[] TEMPLATES = { SOBJECT_POJO_VM, SOBJECT_QUERY_RECORDS_VM, SOBJECT_PICKLIST_VM,
+        SOBJECT_PICKLIST_OPEN_VM, SOBJECT_JSON_VM, SOBJECT_JSON_MODULE_VM, SOBJECT_XML_CONVERTER_VM, SOBJECT_XSTREAM_SETUP_VM };
 
     // used for velocity logging, to avoid creating velocity.log
     private static final Logger LOG = Logger.getLogger(CamelSalesforceMojo.class.getName());
-    private static final int TIMEOUT = 60000;
 
     /**
-     * Salesforce client id
-     * @parameter expression="${clientId}"
+     * Location of the file.
+     * @parameter expression="${outputDirectory}" default-value="${project.build.directory}/generated-sources/camel-salesforce"
      * @required
      */
-    protected String clientId;
+    protected File outputDirectory;
 
     /**
-     * Salesforce client secret
-     * @parameter expression="${clientSecret}"
-     * @required
+     * Java package name for generated POJOs
+     * @parameter expression="${packageName}" default-value="org.fusesource.camel.salesforce.dto"
      */
-    protected String clientSecret;
+    protected String packageName;
 
     /**
-     * Salesforce user name
-     * @parameter expression="${userName}"
-     * @required
+     * Metadata snapshot file or directory, generates POJOs offline without connecting to Salesforce
+     * @parameter expression="${snapshot}"
      */
-    protected String userName;
+    protected File snapshot;
 
     /**
-     * Salesforce password
-     * @parameter expression="${password}"
-     * @required
+     * Maximum number of retrieved SObject descriptions waiting to be generated
+     * @parameter expression="${pipelineQueueSize}" default-value="16"
      */
-    protected String password;
+    protected int pipelineQueueSize;
 
     /**
-     * Salesforce version
-     * @parameter expression="${version}" default-value="25.0"
+     * Number of threads rendering Java Classes, 0 uses the number of available processors
+     * @parameter expression="${generatorThreads}" default-value="0"
      */
-    protected String version;
+    protected int generatorThreads;
 
     /**
-     * Location of the file.
-     * @parameter expression="${outputDirectory}" default-value="${project.build.directory}/generated-sources/camel-salesforce"
-     * @required
+     * Only write generated files whose content differs from the file in outputDirectory, ignoring the
+     * generation date, so unchanged files keep their modification time. Note that this is enabled by default,
+     * earlier versions rewrote every file on every run, set to false to restore that behavior
+     * @parameter expression="${writeIfChanged}" default-value="true"
      */
-    protected File outputDirectory;
+    protected boolean writeIfChanged;
 
     /**
-     * Names of Salesforce SObject for which POJOs must be generated
-     * @parameter
+     * Delete files in the package directory generated by a previous run of this execution that this run
+     * no longer generates, like classes for Objects or picklists that were removed or are no longer included.
+     * Generated files are recorded in a manifest in outputDirectory per execution and package.
+     * Files modified after they were generated are never deleted
+     * @parameter expression="${pruneStaleFiles}" default-value="false"
+     */
+    protected boolean pruneStaleFiles;
+
+    /**
+     * Generate byte identical sources from the same metadata, with fields and picklist values sorted by name,
+     * and the generation date taken from the SOURCE_DATE_EPOCH environment variable, or omitted if it is not set
+     * @parameter expression="${reproducible}" default-value="false"
+     */
+    protected boolean reproducible;
+
+    /**
+     * Picklists generated as open classes that keep values added after generation, instead of enums that
+     * throw an IllegalArgumentException for them. One of none, unrestricted for picklists that are not
+     * restricted to their values in Salesforce, or all. Open classes are not source compatible with enums,
+     * they can't be used in switch statements, EnumSet or EnumMap
+     * @parameter expression="${lenientPicklists}" default-value="none"
+     */
+    protected String lenientPicklists;
+
+    /**
+     * Track modified fields in generated POJOs with a bitset maintained by the setters, and generate a
+     * DirtySerializer per POJO that only writes modified fields, with explicit nulls for cleared fields
+     * @parameter expression="${dirtyTracking}" default-value="false"
+     */
+    protected boolean dirtyTracking;
+
+    /**
+     * Generate a streaming Jackson serializer and deserializer for every SObject, and a Jackson module
+     * SObjectJsonModule that registers them, to avoid bean introspection when reading and writing SObjects
+     * @parameter expression="${jsonSerializers}" default-value="false"
+     */
+    protected boolean jsonSerializers;
+
+    /**
+     * Generate an XStream converter for every SObject, and a class SObjectXStreamSetup that registers
+     * all aliases and converters with an XStream instance up front, to avoid reflection for XML payloads
+     * @parameter expression="${xmlConverters}" default-value="false"
+     */
+    protected boolean xmlConverters;
+
+    /**
+     * Skip generation when the plugin configuration, templates and metadata snapshot are unchanged since
+     * the last run, the generated files are intact, and Salesforce returns the same SObject descriptions.
+     * Descriptions are compared using a hash of the describe responses kept with the input fingerprint,
+     * they are retrieved and kept in memory before generation, and revalidated cheaply with the describe cache
+     * @parameter expression="${skipUnchanged}" default-value="false"
+     */
+    protected boolean skipUnchanged;
+
+    /**
+     * With skipUnchanged, hours after the last check during which Salesforce metadata is not checked at all
+     * if nothing else changed, so login and metadata retrieval are skipped too. Changes to Salesforce metadata
+     * made during this interval are only picked up after it. 0 checks Salesforce metadata on every run
+     * @parameter expression="${metadataRevalidationInterval}" default-value="0"
+     */
+    protected int metadataRevalidationInterval;
+
+    /**
+     * Only log the metadata requests generation would make, without describing Objects or generating POJOs
+     * @parameter expression="${dryRun}" default-value="false"
      */
-    protected String[] includes;
+    protected boolean dryRun;
 
     /**
-     * Do NOT generate POJOs for these Salesforce SObjects
+     * Comma separated names of fields to generate by SObject name, other fields are skipped,
+     * e.g. &lt;Account&gt;Name,Phone&lt;/Account&gt;
      * @parameter
      */
-    protected String[] excludes;
+    protected Map<String, String> fieldIncludes;
 
     /**
-     * Include Salesforce SObjects that match pattern
-     * @parameter expression="${includePattern}"
+     * Comma separated names of fields NOT to generate by SObject name
+     * @parameter
      */
-    protected String includePattern;
+    protected Map<String, String> fieldExcludes;
 
     /**
-     * Exclude Salesforce SObjects that match pattern
-     * @parameter expression="${excludePattern}"
+     * Only generate fields with these field attribute values, like calculated=false to skip formula fields,
+     * or deprecatedAndHidden=false
+     * @parameter
      */
-    protected String excludePattern;
+    protected Map<String, String> fieldAttributes;
 
     /**
-     * Java package name for generated POJOs
-     * @parameter expression="${packageName}" default-value="org.fusesource.camel.salesforce.dto"
+     * Plugin execution id, keeps the generated files of executions sharing outputDirectory apart
+     * @parameter default-value="${mojoExecution.executionId}"
+     * @readonly
      */
-    protected String packageName;
+    protected String executionId;
 
     private VelocityEngine engine;
 
+    // picklist enums with the same name may be generated for different SObjects at the same time
+    private final ConcurrentMap<String, Object> enumFileLocks = new ConcurrentHashMap<String, Object>();
+    private final ConcurrentMap<String, String> enumFileOwners = new ConcurrentHashMap<String, String>();
+
+    // names of generated SObjects, for the Jackson module
+    private final Set<String> generatedNames = new ConcurrentSkipListSet<String>();
+
     /**
      * Execute the mojo to generate SObject POJOs
      * @throws MojoExecutionException
@@ -145,6 +223,43 @@ public class CamelSalesforceMojo extends AbstractMojo
     public void execute()
         throws MojoExecutionException
     {
+        validateFetchStrategy();
+        if (!Arrays.asList(GeneratorUtility.LENIENT_PICKLISTS).contains(lenientPicklists)) {
+            throw new MojoExecutionException(String.format("Invalid lenientPicklists %s, expected one of %s",
+                lenientPicklists, Arrays.toString(GeneratorUtility.LENIENT_PICKLISTS)));
+        }
+
+        if (dryRun && snapshot != null) {
+            getLog().info("Dry run, generating from a snapshot makes no metadata requests");
+            return;
+        }
+
+        // validate package name
+        if (!packageName.matches(PACKAGE_NAME_PATTERN)) {
+            throw new MojoExecutionException("Invalid package name " + packageName);
+        }
+
+        // skip everything if nothing changed since the last run
+        InputFingerprint fingerprint = null;
+        String previousMetadataRevision = null;
+        if (!dryRun) {
+            fingerprint = createFingerprint();
+            if (skipUnchanged && isUpToDate(fingerprint)) {
+                getLog().info(String.format("Generated sources are up to date, metadata last checked %s",
+                    new Date(fingerprint.getChecked())));
+                return;
+            }
+            // only Salesforce metadata may have changed, it is compared before generating
+            if (skipUnchanged && snapshot == null && fingerprint.isUpToDate(-1) && isIntact()) {
+                previousMetadataRevision = fingerprint.getMetadataRevision();
+            }
+            try {
+                fingerprint.invalidate();
+            } catch (IOException e) {
+                throw new MojoExecutionException(e.getMessage(), e);
+            }
+        }
+
         // initialize velocity to load resources from class loader and use Log4J
         Properties velocityProperties = new Properties();
         velocityProperties.setProperty(RuntimeConstants.RESOURCE_LOADER, "cloader");
@@ -154,285 +269,474 @@ public class CamelSalesforceMojo extends AbstractMojo
         engine = new VelocityEngine(velocityProperties);
         engine.init();
 
-        // make sure we can load both templates
-        if (!engine.resourceExists(SOBJECT_POJO_VM) ||
-            !engine.resourceExists(SOBJECT_QUERY_RECORDS_VM)) {
-            throw new MojoExecutionException("Velocity templates not found");
+        // make sure we can load all templates
+        for (String template : TEMPLATES) {
+            if (!engine.resourceExists(template)) {
+                throw new MojoExecutionException("Velocity template " + template + " not found");
+            }
+        }
+
+        // create package directory
+        final File pkgDir = getPackageDirectory();
+        if (!dryRun && !pkgDir.exists()) {
+            if (!pkgDir.mkdirs()) {
+                throw new MojoExecutionException("Unable to create " + pkgDir);
+            }
         }
 
-        // connect to Salesforce
-        final HttpClient httpClient = new HttpClient();
-        httpClient.registerListener(RedirectListener.class.getName());
-        httpClient.setConnectTimeout(TIMEOUT);
-        httpClient.setTimeout(TIMEOUT);
+        // use Jackson json
+        final ObjectMapper mapper = new ObjectMapper();
+
+        // generate POJOs for every object description as soon as it is available
+        final GeneratorUtility utility = new GeneratorUtility(reproducible, lenientPicklists);
+        final FieldFilter fieldFilter = new FieldFilter(fieldIncludes, fieldExcludes, fieldAttributes, getLog());
+        final String generatedDate = getGeneratedDate();
+        final GeneratedFiles generatedFiles;
         try {
-            httpClient.start();
-        } catch (Exception e) {
-            throw new MojoExecutionException("Error creating HTTP client: " + e.getMessage(), e);
+            generatedFiles = createGeneratedFiles(pkgDir, generatedDate);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Error reading generated files manifest: " + e.getMessage(), e);
         }
+        final DescriptionPipeline.Consumer generator = new DescriptionPipeline.Consumer() {
+            public void consume(SObjectDescription description) throws MojoExecutionException {
+                if (!fieldFilter.isEmpty()) {
+                    description.setFields(fieldFilter.filter(description, utility));
+                }
+                processDescription(pkgDir, description, utility.createModel(description), utility, generatedDate,
+                    generatedFiles);
+            }
+        };
 
-        final SalesforceSession session = new SalesforceSession(httpClient,
-            new SalesforceLoginConfig(SalesforceLoginConfig.DEFAULT_LOGIN_URL,
-            clientId, clientSecret, userName, password, false));
+        final MetadataRevision metadataRevision = snapshot == null ? new MetadataRevision() : null;
+        final int count;
+        boolean complete = false;
+        try {
+            if (snapshot != null) {
+                count = generateFromSnapshot(mapper, generator);
+            } else {
+                count = generateFromSalesforce(mapper, generator, metadataRevision, previousMetadataRevision);
+            }
+            // skipped runs keep the generated files and manifest of the previous run
+            if (count >= 0) {
+                if (jsonSerializers && !dryRun) {
+                    generatePackageClass(pkgDir, JSON_MODULE_NAME, SOBJECT_JSON_MODULE_VM, generatedDate,
+                        generatedFiles);
+                }
+                if (xmlConverters && !dryRun) {
+                    generatePackageClass(pkgDir, XSTREAM_SETUP_NAME, SOBJECT_XSTREAM_SETUP_VM, generatedDate,
+                        generatedFiles);
+                }
+                complete = true;
+            }
+        } finally {
+            if (!dryRun) {
+                try {
+                    generatedFiles.close(complete);
+                } catch (IOException e) {
+                    if (complete) {
+                        throw new MojoExecutionException(
+                            "Error writing generated files manifest: " + e.getMessage(), e);
+                    }
+                    getLog().warn("Error writing generated files manifest: " + e.getMessage());
+                }
+            }
+        }
+
+        if (count < 0) {
+            getLog().info("Salesforce metadata unchanged, generated sources are up to date");
+            saveFingerprint(fingerprint, fingerprint.getOutputRevision(), previousMetadataRevision);
+        } else if (!dryRun) {
+            getLog().info(String.format("Successfully generated Java Classes for %s Objects, %s", count,
+                generatedFiles.getStatistics()));
+
+            final String revision = generatedFiles.getRevision();
+            if (revision.equals(fingerprint.getOutputRevision())) {
+                getLog().info("Generated sources unchanged since " + new Date(fingerprint.getChecked()));
+            }
+            saveFingerprint(fingerprint, revision, metadataRevision != null ? metadataRevision.getRevision() : null);
+        }
+    }
 
-        getLog().info("Salesforce login...");
+    private void saveFingerprint(InputFingerprint fingerprint, String outputRevision, String metadataRevision) {
         try {
-            session.login(null);
-        } catch (SalesforceException e) {
-            String msg = "Salesforce login error " + e.getMessage();
-            throw new MojoExecutionException(msg, e);
+            fingerprint.save(outputRevision, metadataRevision);
+        } catch (IOException e) {
+            getLog().warn("Error saving input fingerprint: " + e.getMessage());
         }
-        getLog().info("Salesforce login successful");
+    }
+
+    private String getGeneratedDate() throws MojoExecutionException {
+        if (!reproducible) {
+            return new Date().toString();
+        }
+        return formatSourceDateEpoch(System.getenv(SOURCE_DATE_EPOCH));
+    }
 
-        // create rest client
-        RestClient restClient = null;
+    // formats SOURCE_DATE_EPOCH seconds as a generation date, null if it is not set
+    static String formatSourceDateEpoch(String sourceDateEpoch) throws MojoExecutionException {
+        if (sourceDateEpoch == null || sourceDateEpoch.trim().length() == 0) {
+            return null;
+        }
+        final long seconds;
         try {
-            restClient = new DefaultRestClient(httpClient,
-                version, "json", session);
-            // remember to start the active client object
-            ((DefaultRestClient)restClient).start();
-        } catch (Exception e) {
-            final String msg = "Unexpected exception creating Rest client: " + e.getMessage();
-            throw new MojoExecutionException(msg, e);
+            seconds = Long.parseLong(sourceDateEpoch.trim());
+        } catch (NumberFormatException e) {
+            throw new MojoExecutionException("Invalid " + SOURCE_DATE_EPOCH + " " + sourceDateEpoch);
         }
+        // same format as Date.toString(), independent of the default locale and time zone
+        final SimpleDateFormat format = new SimpleDateFormat("EEE MMM dd HH:mm:ss zzz yyyy", Locale.ENGLISH);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return format.format(new Date(seconds * 1000));
+    }
 
+    private InputFingerprint createFingerprint() throws MojoExecutionException {
         try {
-            // use Jackson json
-            final ObjectMapper mapper = new ObjectMapper();
+            final InputFingerprint fingerprint = new InputFingerprint(outputDirectory);
 
-            // call getGlobalObjects to get all SObjects
-            final Set<String> objectNames = new HashSet<String>();
-            final SyncResponseCallback callback = new SyncResponseCallback();
-            try {
-                getLog().info("Getting Salesforce Objects...");
-                restClient.getGlobalObjects(callback);
-                if (!callback.await(TIMEOUT, TimeUnit.MILLISECONDS)) {
-                    throw new MojoExecutionException("Timeout waiting for getGlobalObjects!");
-                }
-                final SalesforceException ex = callback.getException();
-                if (ex != null) {
-                    throw ex;
+            // plugin and templates
+            fingerprint.add("pluginVersion", getClass().getPackage().getImplementationVersion());
+            final CodeSource codeSource = getClass().getProtectionDomain().getCodeSource();
+            if (codeSource != null && "file".equals(codeSource.getLocation().getProtocol())) {
+                fingerprint.addFile("plugin", new File(codeSource.getLocation().toURI()));
+            }
+            for (String template : TEMPLATES) {
+                final InputStream in = getClass().getResourceAsStream(template);
+                if (in == null) {
+                    throw new MojoExecutionException("Velocity template " + template + " not found");
                 }
-                final GlobalObjects globalObjects = mapper.readValue(callback.getResponse(),
-                    GlobalObjects.class);
+                fingerprint.addContent(template, in);
+            }
 
-                // create a list of object names
-                for (SObject sObject : globalObjects.getSobjects()) {
-                    objectNames.add(sObject.getName());
-                }
-            } catch (Exception e) {
-                String msg = "Error getting global Objects " + e.getMessage();
-                throw new MojoExecutionException(msg, e);
+            // configuration that affects generated sources
+            fingerprint.add("version", version);
+            fingerprint.add("userName", userName);
+            fingerprint.add("clientId", clientId);
+            fingerprint.add("includes", includes);
+            fingerprint.add("excludes", excludes);
+            fingerprint.add("includePattern", includePattern);
+            fingerprint.add("excludePattern", excludePattern);
+            fingerprint.add("objectAttributes", objectAttributes);
+            fingerprint.add("excludeSuffixes", excludeSuffixes);
+            fingerprint.add("packageName", packageName);
+            fingerprint.add("fieldIncludes", fieldIncludes);
+            fingerprint.add("fieldExcludes", fieldExcludes);
+            fingerprint.add("fieldAttributes", fieldAttributes);
+            fingerprint.add("reproducible", reproducible);
+            fingerprint.add("lenientPicklists", lenientPicklists);
+            fingerprint.add("dirtyTracking", dirtyTracking);
+            fingerprint.add("jsonSerializers", jsonSerializers);
+            fingerprint.add("xmlConverters", xmlConverters);
+            if (reproducible) {
+                fingerprint.add(SOURCE_DATE_EPOCH, System.getenv(SOURCE_DATE_EPOCH));
             }
 
-            // check if we are generating POJOs for all objects or not
-            if ((includes != null && includes.length > 0) ||
-                (excludes != null && excludes.length > 0) ||
-                (includePattern != null && !includePattern.trim().isEmpty()) ||
-                (excludePattern != null && !excludePattern.trim().isEmpty())) {
-
-                getLog().info("Looking for matching Object names...");
-                // create a list of accepted names
-                final Set<String> includedNames = new HashSet<String>();
-                if (includes != null && includes.length > 0) {
-                    for (String name : includes) {
-                        name = name.trim();
-                        if (name.isEmpty()) {
-                            throw new MojoExecutionException("Invalid empty name in includes");
-                        }
-                        includedNames.add(name);
-                    }
-                }
+            // metadata snapshots never need revalidation, but can be replaced
+            fingerprint.add("snapshot", snapshot);
+            if (snapshot != null) {
+                fingerprint.addFile("snapshotRevision", snapshot);
+            }
+            return fingerprint;
 
-                final Set<String> excludedNames = new HashSet<String>();
-                if (excludes != null && excludes.length > 0) {
-                    for (String name : excludes) {
-                        name = name.trim();
-                        if (name.isEmpty()) {
-                            throw new MojoExecutionException("Invalid empty name in excludes");
-                        }
-                        excludedNames.add(name);
-                    }
-                }
+        } catch (IOException e) {
+            throw new MojoExecutionException("Error creating input fingerprint: " + e.getMessage(), e);
+        } catch (URISyntaxException e) {
+            throw new MojoExecutionException("Error creating input fingerprint: " + e.getMessage(), e);
+        }
+    }
 
-                // check whether a pattern is in effect
-                Pattern incPattern;
-                if (includePattern != null && !includePattern.trim().isEmpty()) {
-                    incPattern = Pattern.compile(includePattern.trim());
-                } else if (includedNames.isEmpty()) {
-                    // include everything by default if no include names are set
-                    incPattern = Pattern.compile(".*");
-                } else {
-                    // include nothing by default if include names are set
-                    incPattern = Pattern.compile("^$");
-                }
+    private boolean isUpToDate(InputFingerprint fingerprint) {
+        final long revalidationInterval = snapshot != null ? -1 : metadataRevalidationInterval * 3600000L;
+        return fingerprint.isUpToDate(revalidationInterval) && isIntact();
+    }
 
-                // check whether a pattern is in effect
-                Pattern excPattern;
-                if (excludePattern != null && !excludePattern.trim().isEmpty()) {
-                    excPattern = Pattern.compile(excludePattern.trim());
-                } else {
-                    // exclude nothing by default
-                    excPattern = Pattern.compile("^$");
-                }
+    private boolean isIntact() {
+        try {
+            return createGeneratedFiles(getPackageDirectory(), null).isIntact();
+        } catch (IOException e) {
+            getLog().debug("Error checking generated files: " + e.getMessage());
+            return false;
+        }
+    }
 
-                final Set<String> acceptedNames = new HashSet<String>();
-                for (String name : objectNames) {
-                    // name is included, or matches include pattern
-                    // and is not excluded and does not match exclude pattern
-                    if ((includedNames.contains(name) || incPattern.matcher(name).matches()) &&
-                        !excludedNames.contains(name) &&
-                        !excPattern.matcher(name).matches()) {
-                        acceptedNames.add(name);
-                    }
-                }
-                objectNames.clear();
-                objectNames.addAll(acceptedNames);
+    private File getPackageDirectory() {
+        return new File(outputDirectory, packageName.trim().replace('.', File.separatorChar));
+    }
 
-                getLog().info(String.format("Found %s matching Objects", objectNames.size()));
+    // the manifest is only needed to prune stale files, and to check generated files before skipping a run
+    private GeneratedFiles createGeneratedFiles(File pkgDir, String volatileText) throws IOException {
+        final String manifestName = pruneStaleFiles || skipUnchanged
+            ? GeneratedFiles.getManifestName(executionId, packageName) : null;
+        return new GeneratedFiles(outputDirectory, pkgDir, manifestName, writeIfChanged, pruneStaleFiles,
+            volatileText, getLog());
+    }
 
-            } else {
-                getLog().warn(String.format("Generating Java classes for all %s Objects, this may take a while...",
-                    objectNames.size()));
-            }
+    private int generateFromSnapshot(final ObjectMapper mapper, DescriptionPipeline.Consumer generator)
+        throws MojoExecutionException {
 
-            // for every accepted name, get SObject description
-            final Set<SObjectDescription> descriptions =
-                new HashSet<SObjectDescription>();
+        getLog().info("Reading Salesforce metadata snapshot " + snapshot);
+        final MetadataSnapshot metadataSnapshot;
+        try {
+            metadataSnapshot = MetadataSnapshot.open(snapshot);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Error opening metadata snapshot " + snapshot + ": " + e.getMessage(), e);
+        }
 
+        try {
+            final Set<String> objectNames;
             try {
-                getLog().info("Retrieving Object descriptions...");
-                for (String name : objectNames) {
-                    callback.reset();
-                    restClient.getDescription(name, callback);
-                    if (!callback.await(TIMEOUT, TimeUnit.MILLISECONDS)) {
-                        throw new MojoExecutionException(
-                            "Timeout waiting for getDescription for sObject " + name);
-                    }
-                    final SalesforceException ex = callback.getException();
-                    if (ex != null) {
-                        throw ex;
-                    }
-                    descriptions.add(mapper.readValue(callback.getResponse(),
-                            SObjectDescription.class));
+                final InputStream in = metadataSnapshot.openGlobalObjects();
+                try {
+                    objectNames = selectObjectNames(mapper.readValue(in, GlobalObjects.class));
+                } finally {
+                    in.close();
                 }
-            } catch (Exception e) {
-                String msg = "Error getting SObject description " + e.getMessage();
+            } catch (IOException e) {
+                String msg = "Error reading global Objects " + e.getMessage();
                 throw new MojoExecutionException(msg, e);
             }
 
-            // create package directory
-            // validate package name
-            if (!packageName.matches(PACKAGE_NAME_PATTERN)) {
-                throw new MojoExecutionException("Invalid package name " + packageName);
-            }
-            final File pkgDir = new File(outputDirectory, packageName.trim().replace('.', File.separatorChar));
-            if (!pkgDir.exists()) {
-                if (!pkgDir.mkdirs()) {
-                    throw new MojoExecutionException("Unable to create " + pkgDir);
+            getLog().info("Generating Java Classes...");
+            final DescriptionParser parser = new DescriptionParser(mapper);
+            final int count = new DescriptionPipeline(pipelineQueueSize, getGeneratorThreads()).run(new DescriptionPipeline.Producer() {
+                public void produce(DescriptionPipeline.Sink sink) throws Exception {
+                    for (String name : objectNames) {
+                        try {
+                            final InputStream in = metadataSnapshot.openDescription(name);
+                            try {
+                                sink.put(parser.parse(in));
+                            } finally {
+                                in.close();
+                            }
+                        } catch (IOException e) {
+                            String msg = "Error reading SObject description for " + name + ": " + e.getMessage();
+                            throw new MojoExecutionException(msg, e);
+                        }
+                    }
                 }
+            }, generator);
+            getLog().info("Snapshot: " + parser.getStatistics());
+            return count;
+
+        } finally {
+            metadataSnapshot.close();
+        }
+    }
+
+    /**
+     * Retrieves SObject descriptions and generates Java Classes.
+     * @param metadataRevision revision of the retrieved metadata
+     * @param previousMetadataRevision revision of the metadata of the previous run, if only the metadata may
+     *                                 have changed since, in which case generation is skipped if it has not
+     * @return number of generated SObjects, or -1 if generation was skipped
+     */
+    private int generateFromSalesforce(ObjectMapper mapper, DescriptionPipeline.Consumer generator,
+                                       final MetadataRevision metadataRevision, String previousMetadataRevision)
+        throws MojoExecutionException {
+
+        final SalesforceConnection connection = connect();
+        try {
+            final Set<String> objectNames = getObjectNames(connection, mapper);
+            final DescriptionFetcher fetcher = createFetcher(connection, mapper);
+            final RequestPlan plan = new RequestPlan(
+                RequestPlan.isGlobalObjectsRequired(includes, includePattern, createObjectFilter()),
+                objectNames, fetcher);
+            if (dryRun) {
+                getLog().info("Dry run, planned " + plan);
+                return 0;
             }
+            getLog().info("Planned " + plan);
+
+            final DescriptionParser parser = fetcher.getParser();
+            if (previousMetadataRevision != null) {
+                // retrieve all descriptions first, to compare them with the previous run before generating
+                getLog().info("Retrieving Object descriptions to check for changes...");
+                final Map<String, SObjectDescription> descriptions =
+                    new ConcurrentSkipListMap<String, SObjectDescription>();
+                fetcher.fetch(objectNames, new DescriptionFetcher.ResponseHandler() {
+                    public void handle(String objectName, InputStream content) throws Exception {
+                        final DigestInputStream in = metadataRevision.track(content);
+                        descriptions.put(objectName, parser.parse(in));
+                        metadataRevision.add(objectName, in);
+                    }
+                });
+                logStatistics(fetcher);
+                if (previousMetadataRevision.equals(metadataRevision.getRevision())) {
+                    return -1;
+                }
 
-            getLog().info("Generating Java Classes...");
-            // generate POJOs for every object description
-            final GeneratorUtility utility = new GeneratorUtility();
-            // should we provide a flag to control timestamp generation?
-            final String generatedDate = new Date().toString();
-            for (SObjectDescription description : descriptions) {
-                processDescription(pkgDir, description, utility, generatedDate);
+                getLog().info("Salesforce metadata changed, generating Java Classes...");
+                final DescriptionPipeline pipeline = new DescriptionPipeline(pipelineQueueSize, getGeneratorThreads());
+                return pipeline.run(new DescriptionPipeline.Producer() {
+                    public void produce(DescriptionPipeline.Sink sink) throws Exception {
+                        for (SObjectDescription description : descriptions.values()) {
+                            sink.put(description);
+                        }
+                    }
+                }, generator);
             }
 
-            getLog().info(String.format("Successfully generated %s Java Classes", (descriptions.size() * 2)));
+            // for every accepted name, get SObject description, and generate while retrieving the rest
+            getLog().info("Retrieving Object descriptions and generating Java Classes...");
+            final int count = new DescriptionPipeline(pipelineQueueSize, getGeneratorThreads()).run(new DescriptionPipeline.Producer() {
+                public void produce(final DescriptionPipeline.Sink sink) throws Exception {
+                    fetcher.fetch(objectNames, new DescriptionFetcher.ResponseHandler() {
+                        public void handle(String objectName, InputStream content) throws Exception {
+                            final DigestInputStream in = metadataRevision.track(content);
+                            sink.put(parser.parse(in));
+                            metadataRevision.add(objectName, in);
+                        }
+                    });
+                }
+            }, generator);
+            logStatistics(fetcher);
+            return count;
 
         } finally {
-            // remember to stop the client
-            try {
-                ((DefaultRestClient)restClient).stop();
-            } catch (Exception ignore) {}
+            disconnect(connection);
+        }
+    }
 
-            // Salesforce session stop
-            try {
-                session.stop();
-            } catch (Exception ignore) {}
+    @Override
+    protected boolean isDryRun() {
+        return dryRun;
+    }
 
-            // release HttpConnections
-            try {
-                httpClient.stop();
-            } catch (Exception ignore) {}
-        }
+    private int getGeneratorThreads() {
+        return generatorThreads > 0 ? generatorThreads : Runtime.getRuntime().availableProcessors();
     }
 
-    private void processDescription(File pkgDir, SObjectDescription description, GeneratorUtility utility, String generatedDate) throws MojoExecutionException {
+    private Object getEnumFileLock(String fileName) {
+        final Object lock = new Object();
+        final Object existing = enumFileLocks.putIfAbsent(fileName, lock);
+        return existing != null ? existing : lock;
+    }
+
+    // templates get the resolved model, and the description and utility for custom templates
+    private void processDescription(File pkgDir, SObjectDescription description, SObjectModel model,
+                                    GeneratorUtility utility, String generatedDate,
+                                    GeneratedFiles generatedFiles) throws MojoExecutionException {
         // generate a source file for SObject
-        String fileName = description.getName() + JAVA_EXT;
-        BufferedWriter writer = null;
+        String fileName = model.getName() + JAVA_EXT;
         try {
-            final File pojoFile = new File(pkgDir, fileName);
-            writer = new BufferedWriter(new FileWriter(pojoFile));
-
             VelocityContext context = new VelocityContext();
             context.put("packageName", packageName);
             context.put("utility", utility);
             context.put("desc", description);
+            context.put("model", model);
+            context.put("dirtyTracking", dirtyTracking);
             context.put("generatedDate", generatedDate);
 
+            // render to memory, so unchanged files are not written
+            StringWriter writer = new StringWriter();
             Template pojoTemplate = engine.getTemplate(SOBJECT_POJO_VM);
             pojoTemplate.merge(context, writer);
-            // close pojoFile
-            writer.close();
+            generatedFiles.write(new File(pkgDir, fileName), writer.toString());
 
             // write required Enumerations for any picklists
+            final Map<String, SObjectField> fields = new HashMap<String, SObjectField>();
             for (SObjectField field : description.getFields()) {
-                if (utility.isPicklist(field)) {
-                    fileName = utility.enumTypeName(field.getName()) + JAVA_EXT;
-                    File enumFile = new File(pkgDir, fileName);
-                    writer = new BufferedWriter(new FileWriter(enumFile));
-
-                    context = new VelocityContext();
-                    context.put("packageName", packageName);
-                    context.put("utility", utility);
-                    context.put("field", field);
-                    context.put("generatedDate", generatedDate);
-
-                    Template queryTemplate = engine.getTemplate(SOBJECT_PICKLIST_VM);
-                    queryTemplate.merge(context, writer);
-
-                    // close Enum file
-                    writer.close();
+                fields.put(field.getName(), field);
+            }
+            for (PicklistModel picklist : model.getPicklists()) {
+                fileName = picklist.getTypeName() + JAVA_EXT;
+                context = new VelocityContext();
+                context.put("packageName", packageName);
+                context.put("utility", utility);
+                context.put("field", fields.get(picklist.getFieldName()));
+                context.put("picklist", picklist);
+                context.put("generatedDate", generatedDate);
+
+                writer = new StringWriter();
+                Template queryTemplate = engine.getTemplate(picklist.isOpen() ?
+                    SOBJECT_PICKLIST_OPEN_VM : SOBJECT_PICKLIST_VM);
+                queryTemplate.merge(context, writer);
+                synchronized (getEnumFileLock(fileName)) {
+                    // an enum shared by SObjects is always generated from the first SObject by name
+                    final String owner = enumFileOwners.get(fileName);
+                    if (owner == null || model.getName().compareTo(owner) < 0) {
+                        enumFileOwners.put(fileName, model.getName());
+                        generatedFiles.write(new File(pkgDir, fileName), writer.toString());
+                    }
                 }
             }
 
             // write the QueryRecords class
-            fileName = "QueryRecords" + description.getName() + JAVA_EXT;
-            File queryFile = new File(pkgDir, fileName);
-            writer = new BufferedWriter(new FileWriter(queryFile));
-
+            fileName = "QueryRecords" + model.getName() + JAVA_EXT;
             context = new VelocityContext();
             context.put("packageName", packageName);
+            context.put("utility", utility);
             context.put("desc", description);
+            context.put("model", model);
             context.put("generatedDate", generatedDate);
 
+            writer = new StringWriter();
             Template queryTemplate = engine.getTemplate(SOBJECT_QUERY_RECORDS_VM);
             queryTemplate.merge(context, writer);
+            generatedFiles.write(new File(pkgDir, fileName), writer.toString());
+
+            // write the Jackson serializers
+            if (jsonSerializers) {
+                fileName = model.getName() + "Json" + JAVA_EXT;
+                context = new VelocityContext();
+                context.put("packageName", packageName);
+                context.put("model", model);
+                context.put("json", new JsonAccessors());
+                context.put("dirtyTracking", dirtyTracking);
+                context.put("generatedDate", generatedDate);
+
+                writer = new StringWriter();
+                Template jsonTemplate = engine.getTemplate(SOBJECT_JSON_VM);
+                jsonTemplate.merge(context, writer);
+                generatedFiles.write(new File(pkgDir, fileName), writer.toString());
+            }
 
-            // close QueryRecords file
-            writer.close();
+            // write the XStream converter
+            if (xmlConverters) {
+                fileName = model.getName() + "XmlConverter" + JAVA_EXT;
+                context = new VelocityContext();
+                context.put("packageName", packageName);
+                context.put("model", model);
+                context.put("xml", new XmlAccessors());
+                context.put("generatedDate", generatedDate);
+
+                writer = new StringWriter();
+                Template xmlTemplate = engine.getTemplate(SOBJECT_XML_CONVERTER_VM);
+                xmlTemplate.merge(context, writer);
+                generatedFiles.write(new File(pkgDir, fileName), writer.toString());
+            }
+            generatedNames.add(model.getName());
 
         } catch (Exception e) {
             String msg = "Error creating " + fileName + ": " + e.getMessage();
             throw new MojoExecutionException(msg, e);
-        } finally {
-            if (writer != null) {
-                try {
-                    writer.close();
-                } catch (IOException ignore) {}
-            }
+        }
+    }
+
+    // generates a class for all SObjects in the package, like the Jackson module
+    private void generatePackageClass(File pkgDir, String className, String templateName, String generatedDate,
+                                      GeneratedFiles generatedFiles) throws MojoExecutionException {
+        final String fileName = className + JAVA_EXT;
+        try {
+            final VelocityContext context = new VelocityContext();
+            context.put("packageName", packageName);
+            context.put("objectNames", generatedNames);
+            context.put("dirtyTracking", dirtyTracking);
+            context.put("generatedDate", generatedDate);
+
+            final StringWriter writer = new StringWriter();
+            final Template template = engine.getTemplate(templateName);
+            template.merge(context, writer);
+            generatedFiles.write(new File(pkgDir, fileName), writer.toString());
+        } catch (Exception e) {
+            String msg = "Error creating " + fileName + ": " + e.getMessage();
+            throw new MojoExecutionException(msg, e);
         }
     }
 
     public static class GeneratorUtility {
 
         private static final Set<String> baseFields;
+        private static final List<FieldModel> baseFieldModels;
         private static final Map<String, String> lookupMap;
 
         static {
@@ -440,6 +744,7 @@ public class CamelSalesforceMojo extends AbstractMojo
             for (Field field : AbstractSObjectBase.class.getDeclaredFields()) {
                 baseFields.add(field.getName());
             }
+            baseFieldModels = createBaseFieldModels();
 
             // create a type map
             // using JAXB mapping, for the most part
@@ -494,6 +799,128 @@ public class CamelSalesforceMojo extends AbstractMojo
 
         private static final String BASE64BINARY = "base64Binary";
 
+        public static final String LENIENT_NONE = "none";
+        public static final String LENIENT_UNRESTRICTED = "unrestricted";
+        public static final String LENIENT_ALL = "all";
+        public static final String[] LENIENT_PICKLISTS = { LENIENT_NONE, LENIENT_UNRESTRICTED, LENIENT_ALL };
+
+        // base fields with public accessors, sorted by name since declared field order is unspecified
+        private static List<FieldModel> createBaseFieldModels() {
+            final List<FieldModel> models = new ArrayList<FieldModel>();
+            for (String name : new TreeSet<String>(baseFields)) {
+                final String propertyName = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+                final Method getter = getGetter(propertyName);
+                if (getter == null) {
+                    // not a property
+                    continue;
+                }
+                final Class<?> type = getter.getReturnType();
+                try {
+                    AbstractSObjectBase.class.getMethod("set" + propertyName, type);
+                } catch (NoSuchMethodException e) {
+                    // read only
+                    continue;
+                }
+                final String javaType = type.getName().startsWith("java.lang.") ?
+                    type.getSimpleName() : type.getCanonicalName();
+                models.add(new FieldModel(name, propertyName, getter.getName(), javaType, false, null));
+            }
+            return models;
+        }
+
+        // Boolean base fields like IsDeleted may have an is getter
+        private static Method getGetter(String propertyName) {
+            for (String prefix : new String[] { "get", "is" }) {
+                try {
+                    return AbstractSObjectBase.class.getMethod(prefix + propertyName);
+                } catch (NoSuchMethodException e) {
+                    // try the next prefix
+                }
+            }
+            return null;
+        }
+
+        private final boolean sorted;
+        private final String lenientPicklists;
+
+        public GeneratorUtility() {
+            this(false);
+        }
+
+        public GeneratorUtility(boolean sorted) {
+            this(sorted, LENIENT_NONE);
+        }
+
+        /**
+         * Creates a generator utility.
+         * @param sorted sort fields and picklist values by name, instead of using metadata order
+         * @param lenientPicklists picklists generated as open classes, one of {@link #LENIENT_PICKLISTS}
+         */
+        public GeneratorUtility(boolean sorted, String lenientPicklists) {
+            this.sorted = sorted;
+            this.lenientPicklists = lenientPicklists;
+        }
+
+        /**
+         * Resolves the generation model for an SObject, with Java types and names for all generated fields.
+         * @param description SObject description
+         * @return immutable SObject model
+         * @throws MojoExecutionException on unsupported field types
+         */
+        public SObjectModel createModel(SObjectDescription description) throws MojoExecutionException {
+            final List<FieldModel> fields = new ArrayList<FieldModel>();
+            final List<PicklistModel> picklists = new ArrayList<PicklistModel>();
+            final Set<String> updateableBaseNames = new HashSet<String>();
+            for (SObjectField field : description.getFields()) {
+                final String name = field.getName();
+                if (!notBaseField(name)) {
+                    if (Boolean.TRUE.equals(field.getUpdateable())) {
+                        updateableBaseNames.add(name);
+                    }
+                    continue;
+                }
+
+                PicklistModel picklist = null;
+                if (isPicklist(field)) {
+                    final List<PicklistModel.Constant> constants = new ArrayList<PicklistModel.Constant>();
+                    for (PickListValue value : field.getPicklistValues()) {
+                        constants.add(new PicklistModel.Constant(value.getValue(), getEnumConstant(value.getValue())));
+                    }
+                    if (sorted) {
+                        Collections.sort(constants, new Comparator<PicklistModel.Constant>() {
+                            public int compare(PicklistModel.Constant o1, PicklistModel.Constant o2) {
+                                return o1.getValue().compareTo(o2.getValue());
+                            }
+                        });
+                    }
+                    picklist = new PicklistModel(name, enumTypeName(name), constants, isOpenPicklist(field));
+                    picklists.add(picklist);
+                }
+
+                final boolean blob = isBlobField(field);
+                fields.add(new FieldModel(name, blob ? name + "Url" : name, getFieldType(field), blob, picklist));
+            }
+            if (sorted) {
+                Collections.sort(fields, new Comparator<FieldModel>() {
+                    public int compare(FieldModel o1, FieldModel o2) {
+                        return o1.getName().compareTo(o2.getName());
+                    }
+                });
+                Collections.sort(picklists, new Comparator<PicklistModel>() {
+                    public int compare(PicklistModel o1, PicklistModel o2) {
+                        return o1.getTypeName().compareTo(o2.getTypeName());
+                    }
+                });
+            }
+            final List<FieldModel> updateableBaseFields = new ArrayList<FieldModel>();
+            for (FieldModel baseField : baseFieldModels) {
+                if (updateableBaseNames.contains(baseField.getName())) {
+                    updateableBaseFields.add(baseField);
+                }
+            }
+            return new SObjectModel(description.getName(), baseFieldModels, updateableBaseFields, fields, picklists);
+        }
+
         public boolean isBlobField(SObjectField field) {
             final String soapType = field.getSoapType();
             return BASE64BINARY.equals(soapType.substring(soapType.indexOf(':')+1));
@@ -534,6 +961,14 @@ public class CamelSalesforceMojo extends AbstractMojo
             return values.get(values.size() - 1);
         }
 
+        /**
+         * Returns whether a picklist is generated as an open class that keeps unknown values.
+         */
+        public boolean isOpenPicklist(SObjectField field) {
+            return LENIENT_ALL.equals(lenientPicklists) ||
+                (LENIENT_UNRESTRICTED.equals(lenientPicklists) && !Boolean.TRUE.equals(field.getRestrictedPicklist()));
+        }
+
         public boolean isPicklist(SObjectField field) {
             return field.getPicklistValues() != null && !field.getPicklistValues().isEmpty();
         }
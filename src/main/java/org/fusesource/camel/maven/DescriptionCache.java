@@ -0,0 +1,359 @@
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.camel.maven;
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.FilterInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * On-disk cache of raw SObject describe responses, keyed by org id, API version and SObject name.
+ * Every entry keeps the Last-Modified date of the response, which is used to revalidate it
+ * with a conditional If-Modified-Since request. Entries without a Last-Modified date are requested
+ * unconditionally.
+ * Entries are evicted when older than a maximum age, and oldest first when the cache exceeds a maximum size.
+ */
+public class DescriptionCache {
+
+    private static final String JSON_EXT = ".json";
+    private static final String META_EXT = ".properties";
+    private static final String LAST_MODIFIED = "lastModified";
+
+    private final File rootDirectory;
+    private final File directory;
+    private final long maxAge;
+    private final long maxSize;
+    private final Log log;
+
+    private final AtomicInteger notModified = new AtomicInteger();
+    private final AtomicInteger modified = new AtomicInteger();
+
+    /**
+     * Creates a cache for an org and API version.
+     * @param rootDirectory cache root directory, shared by all orgs and versions
+     * @param orgId Salesforce org id
+     * @param version Salesforce API version
+     * @param maxAge maximum entry age in milliseconds
+     * @param maxSize maximum size in bytes of all entries under rootDirectory
+     * @param log Maven log
+     */
+    public DescriptionCache(File rootDirectory, String orgId, String version, long maxAge, long maxSize, Log log) {
+        this.rootDirectory = rootDirectory;
+        this.directory = new File(new File(rootDirectory, orgId), version);
+        this.maxAge = maxAge;
+        this.maxSize = maxSize;
+        this.log = log;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Returns a cached entry.
+     * @param objectName SObject name
+     * @return cached entry, or null if the SObject is not cached
+     */
+    public Entry get(String objectName) {
+        final File content = new File(directory, objectName + JSON_EXT);
+        final File meta = new File(directory, objectName + META_EXT);
+        if (!content.isFile() || !meta.isFile()) {
+            return null;
+        }
+        try {
+            final Properties properties = new Properties();
+            final InputStream in = new FileInputStream(meta);
+            try {
+                properties.load(in);
+            } finally {
+                in.close();
+            }
+            return new Entry(content, properties.getProperty(LAST_MODIFIED));
+        } catch (IOException e) {
+            log.warn("Ignoring unreadable cache entry for " + objectName + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Marks a cached entry as revalidated, which resets its age.
+     * @param objectName SObject name
+     */
+    public void touch(String objectName) {
+        notModified.incrementAndGet();
+        final long now = System.currentTimeMillis();
+        new File(directory, objectName + JSON_EXT).setLastModified(now);
+        new File(directory, objectName + META_EXT).setLastModified(now);
+    }
+
+    /**
+     * Stores a describe response.
+     * @param objectName SObject name
+     * @param content raw describe response
+     * @param lastModified Last-Modified response header, null if the response had none
+     */
+    public void put(String objectName, byte[] content, String lastModified) {
+        try {
+            final InputStream in = store(objectName, new ByteArrayInputStream(content), lastModified);
+            try {
+                while (in.skip(content.length) > 0) {
+                    // copy all content to the cache
+                }
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            log.warn("Unable to cache description for " + objectName + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Stores a describe response while it is being read.
+     * The entry is only added to the cache if the returned stream is read completely.
+     * @param objectName SObject name
+     * @param content raw describe response stream
+     * @param lastModified Last-Modified response header, null if the response had none
+     * @return stream with the describe response, which must be closed after use
+     */
+    public InputStream store(String objectName, InputStream content, String lastModified) {
+        if (!directory.exists() && !directory.mkdirs()) {
+            log.warn("Unable to create describe cache directory " + directory);
+            return content;
+        }
+        modified.incrementAndGet();
+        try {
+            return new CachingInputStream(content, objectName, lastModified);
+        } catch (IOException e) {
+            log.warn("Unable to cache description for " + objectName + ": " + e.getMessage());
+            return content;
+        }
+    }
+
+    /**
+     * Removes entries older than the maximum age, then removes oldest entries until
+     * the cache is smaller than the maximum size.
+     */
+    public synchronized void evict() {
+        final List<File> entries = new ArrayList<File>();
+        collectEntries(rootDirectory, entries);
+
+        final long expiry = System.currentTimeMillis() - maxAge;
+        long size = 0;
+        int evicted = 0;
+        for (File entry : new ArrayList<File>(entries)) {
+            if (entry.lastModified() < expiry) {
+                remove(entry);
+                entries.remove(entry);
+                evicted++;
+            } else {
+                size += entry.length();
+            }
+        }
+
+        if (size > maxSize) {
+            // newest first
+            Collections.sort(entries, new Comparator<File>() {
+                public int compare(File o1, File o2) {
+                    final long diff = o2.lastModified() - o1.lastModified();
+                    return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+                }
+            });
+            while (size > maxSize && !entries.isEmpty()) {
+                final File entry = entries.remove(entries.size() - 1);
+                size -= entry.length();
+                remove(entry);
+                evicted++;
+            }
+        }
+
+        if (evicted > 0) {
+            log.info(String.format("Evicted %s entries from describe cache", evicted));
+        }
+    }
+
+    /**
+     * Returns a summary of revalidated and downloaded entries.
+     */
+    public String getStatistics() {
+        return String.format("%s descriptions unchanged, %s downloaded", notModified.get(), modified.get());
+    }
+
+    private static void collectEntries(File dir, List<File> entries) {
+        final File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isDirectory()) {
+                collectEntries(file, entries);
+            } else if (file.getName().endsWith(JSON_EXT)) {
+                entries.add(file);
+            }
+        }
+    }
+
+    private static void remove(File entry) {
+        final String name = entry.getName();
+        new File(entry.getParentFile(), name.substring(0, name.length() - JSON_EXT.length()) + META_EXT).delete();
+        entry.delete();
+    }
+
+    /**
+     * Copies content to a temporary file while it is read, and commits the cache entry at end of stream.
+     */
+    private class CachingInputStream extends FilterInputStream {
+
+        private final String objectName;
+        private final String lastModified;
+        private final File tempFile;
+        private OutputStream out;
+
+        CachingInputStream(InputStream in, String objectName, String lastModified) throws IOException {
+            super(in);
+            this.objectName = objectName;
+            this.lastModified = lastModified;
+            this.tempFile = File.createTempFile(objectName, ".tmp", directory);
+            this.out = new BufferedOutputStream(new FileOutputStream(tempFile));
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int b = super.read();
+            if (b == -1) {
+                commit();
+            } else if (out != null) {
+                out.write(b);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            final int read = super.read(b, off, len);
+            if (read == -1) {
+                commit();
+            } else if (out != null) {
+                out.write(b, off, read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            final byte[] buffer = new byte[(int) Math.min(n, 8192)];
+            final int read = read(buffer, 0, buffer.length);
+            return read == -1 ? 0 : read;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                // discard incomplete entries
+                if (out != null) {
+                    try {
+                        out.close();
+                    } catch (IOException ignore) {}
+                    out = null;
+                    tempFile.delete();
+                }
+            }
+        }
+
+        private void commit() {
+            if (out == null) {
+                return;
+            }
+            try {
+                out.close();
+                out = null;
+                synchronized (DescriptionCache.this) {
+                    // write metadata last, so a partially written entry is never used
+                    final File meta = new File(directory, objectName + META_EXT);
+                    final File content = new File(directory, objectName + JSON_EXT);
+                    meta.delete();
+                    content.delete();
+                    if (!tempFile.renameTo(content)) {
+                        throw new IOException("Unable to rename " + tempFile + " to " + content);
+                    }
+                    final Properties properties = new Properties();
+                    if (lastModified != null) {
+                        properties.setProperty(LAST_MODIFIED, lastModified);
+                    }
+                    final OutputStream metaOut = new FileOutputStream(meta);
+                    try {
+                        properties.store(metaOut, "Salesforce describe cache entry for " + objectName);
+                    } finally {
+                        metaOut.close();
+                    }
+                }
+            } catch (IOException e) {
+                tempFile.delete();
+                log.warn("Unable to cache description for " + objectName + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Cached describe response with its Last-Modified date.
+     */
+    public static class Entry {
+
+        private final File content;
+        private final String lastModified;
+
+        public Entry(File content, String lastModified) {
+            this.content = content;
+            this.lastModified = lastModified;
+        }
+
+        /**
+         * Opens the cached describe response, the stream must be closed after use.
+         */
+        public InputStream openStream() throws IOException {
+            return new BufferedInputStream(new FileInputStream(content));
+        }
+
+        /**
+         * Returns the Last-Modified date of the cached response, or null if it had none.
+         */
+        public String getLastModified() {
+            return lastModified;
+        }
+    }
+}
@@ -0,0 +1,379 @@
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.camel.maven;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.fusesource.camel.component.salesforce.api.SalesforceException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Retrieves SObject descriptions using a {@link MetadataRestClient}.
+ * With a concurrency greater than 1, up to that many describe requests are kept in flight,
+ * each with its own timeouts and retries. The first failure cancels all outstanding requests.
+ * Raw describe responses are passed to a {@link ResponseHandler} as streams as they arrive.
+ */
+public class DescriptionFetcher {
+
+    static final int SC_NOT_FOUND = 404;
+
+    protected final ObjectMapper mapper;
+    protected final Log log;
+    protected final MetadataRestClient metadataClient;
+    private final int concurrency;
+
+    protected final DescriptionParser parser;
+    protected DescriptionCache cache;
+    private SharedMetadata sharedMetadata;
+    private boolean skipNotFound;
+
+    public DescriptionFetcher(MetadataRestClient metadataClient, ObjectMapper mapper, int concurrency, Log log) {
+        this.metadataClient = metadataClient;
+        this.mapper = mapper;
+        this.concurrency = Math.max(1, concurrency);
+        this.log = log;
+        this.parser = new DescriptionParser(mapper);
+    }
+
+    /**
+     * Enables caching of describe responses, cached descriptions are revalidated with conditional requests.
+     * @param cache describe cache
+     */
+    public void setCache(DescriptionCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Shares descriptions with other goal executions in the JVM, descriptions that another execution
+     * is retrieving or has retrieved are not requested again.
+     * @param sharedMetadata shared metadata for the same login and API version
+     */
+    public void setSharedMetadata(SharedMetadata sharedMetadata) {
+        this.sharedMetadata = sharedMetadata;
+    }
+
+    /**
+     * Skips SObjects that do not exist with a warning, instead of failing.
+     * Used when included names are described without checking them against getGlobalObjects.
+     * @param skipNotFound whether to skip SObjects that do not exist
+     */
+    public void setSkipNotFound(boolean skipNotFound) {
+        this.skipNotFound = skipNotFound;
+    }
+
+    public DescriptionCache getCache() {
+        return cache;
+    }
+
+    public DescriptionParser getParser() {
+        return parser;
+    }
+
+    /**
+     * Returns the number of HTTP requests needed to retrieve descriptions.
+     * @param objectNames SObject names
+     */
+    public int getPlannedRequests(Collection<String> objectNames) {
+        return objectNames.size();
+    }
+
+    /**
+     * Retrieves raw SObject describe responses.
+     * @param objectNames SObject names
+     * @param handler handler for describe responses, called concurrently if concurrency is greater than 1
+     * @throws MojoExecutionException on the first error
+     */
+    public void fetch(Collection<String> objectNames, final ResponseHandler handler) throws MojoExecutionException {
+        if (sharedMetadata == null) {
+            doFetch(objectNames, handler);
+            return;
+        }
+
+        // retrieve descriptions no other execution has claimed, and wait for the rest
+        final Map<String, SharedMetadata.Description> claimed = new HashMap<String, SharedMetadata.Description>();
+        final List<SharedMetadata.Description> waiting = new ArrayList<SharedMetadata.Description>();
+        for (String name : objectNames) {
+            final SharedMetadata.Description description = sharedMetadata.getDescription(name);
+            if (description.claim()) {
+                claimed.put(name, description);
+            } else {
+                waiting.add(description);
+            }
+        }
+        if (!waiting.isEmpty()) {
+            log.info(String.format("Sharing %s Object descriptions with other executions", waiting.size()));
+        }
+
+        try {
+            doFetch(claimed.keySet(), new ResponseHandler() {
+                public void handle(String objectName, InputStream content) throws Exception {
+                    final byte[] bytes = readFully(content);
+                    claimed.get(objectName).complete(bytes);
+                    handler.handle(objectName, new ByteArrayInputStream(bytes));
+                }
+            });
+            // descriptions not handled by a successful fetch were skipped, since the SObjects do not exist
+            for (SharedMetadata.Description description : claimed.values()) {
+                if (!description.isDone()) {
+                    description.complete(null);
+                }
+            }
+        } finally {
+            // fail descriptions that were not retrieved, so other executions do not wait forever
+            for (SharedMetadata.Description description : claimed.values()) {
+                if (!description.isDone()) {
+                    description.fail(new MojoExecutionException(
+                        "SObject description for " + description.getName() + " was not retrieved"));
+                }
+            }
+        }
+
+        for (SharedMetadata.Description description : waiting) {
+            final byte[] bytes;
+            try {
+                bytes = description.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new MojoExecutionException("Interrupted waiting for SObject description", e);
+            } catch (ExecutionException e) {
+                final Throwable cause = e.getCause();
+                throw new MojoExecutionException(String.format("Error getting SObject description for %s: %s",
+                    description.getName(), cause.getMessage()), cause);
+            }
+            if (bytes == null) {
+                log.warn("Skipping unknown Object " + description.getName());
+                continue;
+            }
+            handle(handler, description.getName(), new ByteArrayInputStream(bytes));
+        }
+    }
+
+    /**
+     * Retrieves raw SObject describe responses, without sharing them with other executions.
+     * @param objectNames SObject names
+     * @param handler handler for describe responses, called concurrently if concurrency is greater than 1
+     * @throws MojoExecutionException on the first error
+     */
+    protected void doFetch(Collection<String> objectNames, final ResponseHandler handler)
+        throws MojoExecutionException {
+        final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (final String name : objectNames) {
+            tasks.add(new Callable<Void>() {
+                public Void call() throws Exception {
+                    final InputStream content = describe(name);
+                    if (content != null) {
+                        handle(handler, name, content);
+                    }
+                    return null;
+                }
+            });
+        }
+        execute(tasks);
+    }
+
+    protected void handle(ResponseHandler handler, String name, InputStream content) throws MojoExecutionException {
+        try {
+            handler.handle(name, content);
+        } catch (MojoExecutionException e) {
+            throw e;
+        } catch (Exception e) {
+            String msg = "Error processing SObject description for " + name + ": " + e.getMessage();
+            throw new MojoExecutionException(msg, e);
+        } finally {
+            try {
+                content.close();
+            } catch (IOException ignore) {}
+        }
+    }
+
+    /**
+     * Runs describe tasks, with up to {@link #concurrency} tasks in flight.
+     * @param tasks tasks that each retrieve one or more descriptions
+     * @throws MojoExecutionException on the first task failure
+     */
+    protected void execute(List<Callable<Void>> tasks) throws MojoExecutionException {
+        if (concurrency == 1 || tasks.size() <= 1) {
+            for (Callable<Void> task : tasks) {
+                try {
+                    task.call();
+                } catch (MojoExecutionException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new MojoExecutionException(e.getMessage(), e);
+                }
+            }
+            return;
+        }
+
+        final int threads = Math.min(concurrency, tasks.size());
+        log.info(String.format("Running %s describe requests with %s in flight...", tasks.size(), threads));
+
+        final ExecutorService executor = Executors.newFixedThreadPool(threads, new DaemonThreadFactory("describe"));
+        final CompletionService<Void> completionService = new ExecutorCompletionService<Void>(executor);
+        final List<Future<Void>> futures = new ArrayList<Future<Void>>();
+        try {
+            for (Callable<Void> task : tasks) {
+                futures.add(completionService.submit(task));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                completionService.take().get();
+            }
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while retrieving Object descriptions", e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof MojoExecutionException) {
+                throw (MojoExecutionException) cause;
+            }
+            throw new MojoExecutionException(cause.getMessage(), cause);
+        } finally {
+            // fail fast, cancel any outstanding requests
+            for (Future<Void> future : futures) {
+                future.cancel(true);
+            }
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Gets a describe response.
+     * @param name SObject name
+     * @return describe response stream, which must be closed after use,
+     * or null if the SObject does not exist and is skipped
+     * @throws MojoExecutionException on error
+     */
+    protected InputStream describe(String name) throws MojoExecutionException {
+        if (cache != null) {
+            return describeCached(name);
+        }
+
+        try {
+            return metadataClient.getDescription(name, null).getContentStream();
+        } catch (Exception e) {
+            if (isSkipped(name, e)) {
+                return null;
+            }
+            String msg = "Error getting SObject description for " + name + ": " + e.getMessage();
+            throw new MojoExecutionException(msg, e);
+        }
+    }
+
+    private InputStream describeCached(String name) throws MojoExecutionException {
+        final DescriptionCache.Entry entry = cache.get(name);
+        try {
+            final MetadataRestClient.Response response = metadataClient.getDescription(name,
+                entry != null ? entry.getLastModified() : null);
+
+            if (entry != null && response.getStatus() == MetadataRestClient.SC_NOT_MODIFIED) {
+                response.getContentStream().close();
+                cache.touch(name);
+                return entry.openStream();
+            }
+            // store the response in the cache while it is parsed
+            return cache.store(name, response.getContentStream(), response.getLastModified());
+        } catch (Exception e) {
+            if (isSkipped(name, e)) {
+                return null;
+            }
+            String msg = "Error getting SObject description for " + name + ": " + e.getMessage();
+            throw new MojoExecutionException(msg, e);
+        }
+    }
+
+    /**
+     * Checks whether a failed describe is skipped, because the SObject does not exist.
+     * @param name SObject name
+     * @param statusCode HTTP status of the failed describe
+     * @return true if the SObject is skipped
+     */
+    protected boolean isSkipped(String name, int statusCode) {
+        if (skipNotFound && statusCode == SC_NOT_FOUND) {
+            log.warn("Skipping unknown Object " + name);
+            return true;
+        }
+        return false;
+    }
+
+    private boolean isSkipped(String name, Exception e) {
+        return e instanceof SalesforceException && isSkipped(name, ((SalesforceException) e).getStatusCode());
+    }
+
+    static byte[] readFully(InputStream in) throws IOException {
+        try {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Handler for raw describe responses.
+     */
+    public interface ResponseHandler {
+
+        /**
+         * Handles a describe response, the content stream is closed by the fetcher.
+         */
+        void handle(String objectName, InputStream content) throws Exception;
+    }
+
+    /**
+     * Creates named daemon threads, so a hung request never keeps the Maven JVM alive.
+     */
+    static class DaemonThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger counter = new AtomicInteger();
+        private final String prefix;
+
+        DaemonThreadFactory(String prefix) {
+            this.prefix = "camel-salesforce-" + prefix + "-";
+        }
+
+        public Thread newThread(Runnable runnable) {
+            final Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
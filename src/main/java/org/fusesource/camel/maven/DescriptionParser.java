@@ -0,0 +1,130 @@
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.camel.maven;
+
+import org.codehaus.jackson.JsonParseException;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.fusesource.camel.component.salesforce.api.dto.SObjectDescription;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Parses SObject descriptions incrementally from describe response streams,
+ * without buffering whole responses, and counts parsed bytes and objects.
+ * Thread safe.
+ */
+public class DescriptionParser {
+
+    private final ObjectMapper mapper;
+    private final AtomicLong bytesParsed = new AtomicLong();
+    private final AtomicInteger objectsParsed = new AtomicInteger();
+
+    public DescriptionParser(ObjectMapper mapper) {
+        this.mapper = mapper;
+    }
+
+    /**
+     * Parses an SObject description, and reads the response stream to its end.
+     * Reading to the end lets wrapping streams like describe cache entries see the end of the response,
+     * and lets the HTTP connection be reused.
+     * @param in describe response stream, not closed by this method
+     * @return SObject description
+     * @throws IOException on read or parse errors
+     */
+    public SObjectDescription parse(InputStream in) throws IOException {
+        final CountingInputStream counting = new CountingInputStream(in);
+        final JsonParser parser = mapper.getJsonFactory().createJsonParser(counting);
+        try {
+            final SObjectDescription description = mapper.readValue(parser, SObjectDescription.class);
+            if (parser.nextToken() != null) {
+                throw new JsonParseException("Unexpected content after SObject description",
+                    parser.getCurrentLocation());
+            }
+            // drain whitespace the parser did not need to read
+            final byte[] buffer = new byte[512];
+            while (counting.read(buffer) != -1) {
+                // discard
+            }
+            objectsParsed.incrementAndGet();
+            return description;
+        } finally {
+            parser.close();
+            bytesParsed.addAndGet(counting.count);
+        }
+    }
+
+    public long getBytesParsed() {
+        return bytesParsed.get();
+    }
+
+    public int getObjectsParsed() {
+        return objectsParsed.get();
+    }
+
+    public String getStatistics() {
+        return String.format("parsed %s Object descriptions from %s KB", objectsParsed.get(), bytesParsed.get() / 1024);
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int b = super.read();
+            if (b != -1) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            final int read = super.read(b, off, len);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            final long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() {
+            // the caller owns the stream
+        }
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.camel.maven;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.fusesource.camel.component.salesforce.api.dto.SObjectDescription;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Producer/consumer pipeline between retrieving and rendering SObject descriptions.
+ * The producer runs on its own thread and hands every description to the consumers as soon as it arrives,
+ * through a bounded queue that blocks the producer when the consumers fall behind.
+ * Descriptions are released once consumed, so they are never all kept in memory together.
+ * With more than one consumer, descriptions are consumed in parallel, so consumers must be thread safe.
+ * Consumer errors do not stop the pipeline, they are collected and reported together at the end.
+ */
+public class DescriptionPipeline {
+
+    // marks the end of descriptions, compared by identity
+    private static final SObjectDescription END = new SObjectDescription();
+
+    // maximum number of consumer errors listed in the aggregated error message
+    private static final int MAX_REPORTED_ERRORS = 20;
+
+    private final int queueSize;
+    private final int consumers;
+
+    public DescriptionPipeline(int queueSize) {
+        this(queueSize, 1);
+    }
+
+    /**
+     * Creates a pipeline.
+     * @param queueSize maximum number of descriptions waiting to be consumed
+     * @param consumers number of consumer threads
+     */
+    public DescriptionPipeline(int queueSize, int consumers) {
+        this.queueSize = Math.max(1, queueSize);
+        this.consumers = Math.max(1, consumers);
+    }
+
+    /**
+     * Runs producer and consumers until all descriptions are consumed, or the producer fails.
+     * @param producer description producer, run on a separate thread
+     * @param consumer description consumer, run on the calling thread, or on a pool of consumer threads
+     * @return number of consumed descriptions
+     * @throws MojoExecutionException on a producer error, or after all descriptions are consumed
+     * if any consumer failed
+     */
+    public int run(final Producer producer, final Consumer consumer) throws MojoExecutionException {
+        final BlockingQueue<SObjectDescription> queue = new ArrayBlockingQueue<SObjectDescription>(queueSize);
+        final Throwable[] producerFailure = new Throwable[1];
+
+        final Thread producerThread = new DescriptionFetcher.DaemonThreadFactory("producer").newThread(
+            new Runnable() {
+                public void run() {
+                    try {
+                        producer.produce(new Sink() {
+                            public void put(SObjectDescription description) throws InterruptedException {
+                                queue.put(description);
+                            }
+                        });
+                    } catch (Throwable t) {
+                        synchronized (producerFailure) {
+                            producerFailure[0] = t;
+                        }
+                    } finally {
+                        // always wake up the consumers, dropping pending descriptions after a failure
+                        synchronized (producerFailure) {
+                            if (producerFailure[0] != null) {
+                                queue.clear();
+                            }
+                        }
+                        try {
+                            queue.put(END);
+                        } catch (InterruptedException ignore) {
+                            // consumers were interrupted, and interrupted the producer
+                        }
+                    }
+                }
+            });
+        producerThread.start();
+
+        final AtomicInteger count = new AtomicInteger();
+        final List<Throwable> consumerFailures = new ArrayList<Throwable>();
+        final Runnable worker = new Runnable() {
+            public void run() {
+                try {
+                    SObjectDescription description;
+                    while ((description = queue.take()) != END) {
+                        try {
+                            consumer.consume(description);
+                            count.incrementAndGet();
+                        } catch (Throwable t) {
+                            // keep consuming, so all errors are reported together
+                            synchronized (consumerFailures) {
+                                consumerFailures.add(t);
+                            }
+                        }
+                    }
+                    // pass the end marker on to the other consumers
+                    queue.put(END);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+
+        boolean completed = false;
+        try {
+            if (consumers == 1) {
+                worker.run();
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedException();
+                }
+            } else {
+                final ExecutorService executor = Executors.newFixedThreadPool(consumers,
+                    new DescriptionFetcher.DaemonThreadFactory("generator"));
+                try {
+                    for (int i = 0; i < consumers; i++) {
+                        executor.execute(worker);
+                    }
+                    executor.shutdown();
+                    while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                        // wait for all consumers
+                    }
+                } finally {
+                    executor.shutdownNow();
+                }
+            }
+            completed = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while generating Java Classes", e);
+        } finally {
+            if (!completed) {
+                producerThread.interrupt();
+            }
+        }
+
+        try {
+            producerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while retrieving Object descriptions", e);
+        }
+
+        final Throwable failure;
+        synchronized (producerFailure) {
+            failure = producerFailure[0];
+        }
+        if (failure instanceof MojoExecutionException) {
+            throw (MojoExecutionException) failure;
+        } else if (failure != null) {
+            throw new MojoExecutionException(failure.getMessage(), failure);
+        }
+
+        synchronized (consumerFailures) {
+            if (consumerFailures.size() == 1 && consumerFailures.get(0) instanceof MojoExecutionException) {
+                throw (MojoExecutionException) consumerFailures.get(0);
+            } else if (!consumerFailures.isEmpty()) {
+                final StringBuilder message = new StringBuilder();
+                message.append(consumerFailures.size()).append(" errors generating Java Classes:");
+                for (Throwable t : consumerFailures.subList(0, Math.min(MAX_REPORTED_ERRORS, consumerFailures.size()))) {
+                    message.append("\n  ").append(t.getMessage());
+                }
+                if (consumerFailures.size() > MAX_REPORTED_ERRORS) {
+                    message.append("\n  ...");
+                }
+                throw new MojoExecutionException(message.toString(), consumerFailures.get(0));
+            }
+        }
+        return count.get();
+    }
+
+    /**
+     * Receives produced descriptions, blocking while the queue is full.
+     */
+    public interface Sink {
+
+        void put(SObjectDescription description) throws InterruptedException;
+    }
+
+    public interface Producer {
+
+        void produce(Sink sink) throws Exception;
+    }
+
+    public interface Consumer {
+
+        void consume(SObjectDescription description) throws MojoExecutionException;
+    }
+}
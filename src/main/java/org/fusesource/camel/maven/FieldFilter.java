@@ -0,0 +1,122 @@
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.camel.maven;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.fusesource.camel.component.salesforce.api.dto.SObjectDescription;
+import org.fusesource.camel.component.salesforce.api.dto.SObjectField;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Selects the fields generated for SObjects, with per Object include and exclude lists,
+ * and field attributes like calculated=false or deprecatedAndHidden=false for all Objects.
+ * Fields of {@link org.fusesource.camel.component.salesforce.api.dto.AbstractSObjectBase} are always kept.
+ */
+public class FieldFilter {
+
+    private final Map<String, Set<String>> includes;
+    private final Map<String, Set<String>> excludes;
+    private final AttributeMatcher<SObjectField> attributes;
+    private final Log log;
+
+    /**
+     * Creates a filter.
+     * @param includes comma separated names of included fields by SObject name, may be null
+     * @param excludes comma separated names of excluded fields by SObject name, may be null
+     * @param attributes required field attribute values by attribute name, may be null
+     * @param log Maven log
+     * @throws MojoExecutionException on unknown attributes or empty field names
+     */
+    public FieldFilter(Map<String, String> includes, Map<String, String> excludes, Map<String, String> attributes,
+                       Log log) throws MojoExecutionException {
+        this.includes = parse(includes, "fieldIncludes");
+        this.excludes = parse(excludes, "fieldExcludes");
+        this.attributes = new AttributeMatcher<SObjectField>(SObjectField.class, attributes);
+        this.log = log;
+    }
+
+    public boolean isEmpty() {
+        return includes.isEmpty() && excludes.isEmpty() && attributes.isEmpty();
+    }
+
+    /**
+     * Returns the fields to generate for an SObject.
+     * @param description SObject description
+     * @param utility generator utility, to recognize base fields
+     * @return accepted fields, in description order
+     * @throws MojoExecutionException if a field attribute can not be read
+     */
+    public List<SObjectField> filter(SObjectDescription description, CamelSalesforceMojo.GeneratorUtility utility)
+        throws MojoExecutionException {
+
+        final String objectName = description.getName();
+        final Set<String> included = includes.get(objectName);
+        final Set<String> excluded = excludes.get(objectName);
+
+        final List<SObjectField> fields = new ArrayList<SObjectField>();
+        final Set<String> found = new HashSet<String>();
+        for (SObjectField field : description.getFields()) {
+            final String name = field.getName();
+            found.add(name);
+            if (!utility.notBaseField(name)
+                || ((included == null || included.contains(name))
+                    && (excluded == null || !excluded.contains(name))
+                    && attributes.matches(field, objectName + "." + name))) {
+                fields.add(field);
+            }
+        }
+
+        if (included != null) {
+            for (String name : included) {
+                if (!found.contains(name)) {
+                    log.warn(String.format("Included field %s not found in SObject %s", name, objectName));
+                }
+            }
+        }
+        return fields;
+    }
+
+    private static Map<String, Set<String>> parse(Map<String, String> lists, String parameter)
+        throws MojoExecutionException {
+
+        final Map<String, Set<String>> result = new HashMap<String, Set<String>>();
+        if (lists == null) {
+            return result;
+        }
+        for (Map.Entry<String, String> entry : lists.entrySet()) {
+            final Set<String> names = new HashSet<String>();
+            if (entry.getValue() != null) {
+                for (String name : entry.getValue().split(",")) {
+                    name = name.trim();
+                    if (name.isEmpty()) {
+                        throw new MojoExecutionException(
+                            "Invalid empty field name in " + parameter + " for " + entry.getKey());
+                    }
+                    names.add(name);
+                }
+            }
+            result.put(entry.getKey().trim(), names);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.camel.maven;
+
+/**
+ * Immutable generation model for an SObject field.
+ */
+public final class FieldModel {
+
+    private final String name;
+    private final String propertyName;
+    private final String getterName;
+    private final String javaType;
+    private final boolean blob;
+    private final PicklistModel picklist;
+
+    public FieldModel(String name, String propertyName, String javaType, boolean blob, PicklistModel picklist) {
+        this(name, propertyName, "get" + propertyName, javaType, blob, picklist);
+    }
+
+    public FieldModel(String name, String propertyName, String getterName, String javaType, boolean blob,
+                      PicklistModel picklist) {
+        this.name = name;
+        this.propertyName = propertyName;
+        this.getterName = getterName;
+        this.javaType = javaType;
+        this.blob = blob;
+        this.picklist = picklist;
+    }
+
+    /**
+     * Returns the Salesforce field name, used in JSON and XML.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the Java property name, which differs from the field name for blob URL fields.
+     */
+    public String getPropertyName() {
+        return propertyName;
+    }
+
+    /**
+     * Returns the name of the getter method, like getName, or isIsDeleted for some inherited Boolean fields.
+     */
+    public String getGetterName() {
+        return getterName;
+    }
+
+    /**
+     * Returns the Java type, the enum type name for picklists.
+     */
+    public String getJavaType() {
+        return javaType;
+    }
+
+    public boolean isBlob() {
+        return blob;
+    }
+
+    public boolean isPicklist() {
+        return picklist != null;
+    }
+
+    /**
+     * Returns the picklist of this field, or null.
+     */
+    public PicklistModel getPicklist() {
+        return picklist;
+    }
+}
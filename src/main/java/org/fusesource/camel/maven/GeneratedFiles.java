@@ -0,0 +1,358 @@
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.camel.maven;
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+
+/**
+ * Writes generated files only if their content differs from the file on disk,
+ * so unchanged files keep their modification time.
+ * Volatile text like the generation date is ignored when comparing content.
+ * With a manifest, every file a run produces is recorded in it. Manifests are kept per plugin execution
+ * and package, so executions sharing an output directory don't see each other's files. When pruning is
+ * enabled, files in the package directory recorded in the previous manifest that a complete run no longer
+ * generates are deleted, along with directories left empty, unless they were modified since they were generated.
+ * Thread safe.
+ */
+public class GeneratedFiles {
+
+    private static final String MANIFEST_PREFIX = ".camel-salesforce-manifest-";
+
+    private final File outputDirectory;
+    private final File packageDirectory;
+    private final File manifestFile;
+    private final boolean writeIfChanged;
+    private final boolean pruneStaleFiles;
+    private final String volatileText;
+    private final Log log;
+
+    // manifest entries are content hash without volatile text, and hash of the written file
+    private final Map<String, Entry> previous = new HashMap<String, Entry>();
+    private final ConcurrentMap<String, Entry> current = new ConcurrentHashMap<String, Entry>();
+
+    // whether each path generated in this run was written, paths generated more than once count once
+    private final ConcurrentMap<String, Boolean> results = new ConcurrentHashMap<String, Boolean>();
+    private int deleted;
+
+    /**
+     * Creates generated files for an output directory, reading the previous manifest if there is one.
+     * @param outputDirectory output directory
+     * @param packageDirectory package directory in the output directory, the only directory that is pruned
+     * @param manifestName manifest file name in the output directory, see {@link #getManifestName},
+     *                     null to keep no manifest
+     * @param writeIfChanged only write files with changed content, otherwise always write
+     * @param pruneStaleFiles delete previously generated files that are no longer generated, requires a manifest
+     * @param volatileText text ignored when comparing content, like the generation date, may be null
+     * @param log Maven log
+     * @throws IOException on errors reading the manifest
+     */
+    public GeneratedFiles(File outputDirectory, File packageDirectory, String manifestName, boolean writeIfChanged,
+                          boolean pruneStaleFiles, String volatileText, Log log) throws IOException {
+        this.outputDirectory = outputDirectory;
+        this.packageDirectory = packageDirectory;
+        this.manifestFile = manifestName != null ? new File(outputDirectory, manifestName) : null;
+        this.writeIfChanged = writeIfChanged;
+        this.pruneStaleFiles = pruneStaleFiles;
+        this.volatileText = volatileText;
+        this.log = log;
+
+        if (manifestFile != null && manifestFile.isFile()) {
+            final Properties properties = new Properties();
+            final InputStream in = new FileInputStream(manifestFile);
+            try {
+                properties.load(in);
+            } finally {
+                in.close();
+            }
+            for (String path : properties.stringPropertyNames()) {
+                final Entry entry = Entry.parse(properties.getProperty(path));
+                if (entry != null) {
+                    previous.put(path, entry);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the manifest file name of a plugin execution generating a package.
+     * @param executionId plugin execution id, may be null
+     * @param packageName generated package name
+     */
+    public static String getManifestName(String executionId, String packageName) {
+        final String execution = executionId != null ? executionId.replaceAll("[^\\w.-]", "_") : "default";
+        return MANIFEST_PREFIX + execution + "-" + packageName + ".properties";
+    }
+
+    /**
+     * Writes a generated file, if its content changed.
+     * @param file file in the output directory
+     * @param content generated content
+     * @return true if the file was written
+     * @throws IOException on write errors
+     */
+    public boolean write(File file, String content) throws IOException {
+        final byte[] bytes = content.getBytes();
+        final String contentHash = hash((volatileText != null ? content.replace(volatileText, "") : content)
+            .getBytes());
+        final String path = getPath(file);
+
+        // compare with the file on disk, the same file may be generated more than once,
+        // like picklist enums shared by SObjects
+        if (writeIfChanged && file.isFile() && isUnchanged(file, content)) {
+            current.put(path, new Entry(contentHash, hash(file)));
+            results.putIfAbsent(path, Boolean.FALSE);
+            return false;
+        }
+
+        final OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+        current.put(path, new Entry(contentHash, hash(bytes)));
+        results.put(path, Boolean.TRUE);
+        return true;
+    }
+
+    // compares generated content with a file, ignoring the volatile text, which may differ within its line
+    private boolean isUnchanged(File file, String content) throws IOException {
+        final String existing = new String(DescriptionFetcher.readFully(new FileInputStream(file)));
+        if (volatileText == null || volatileText.length() == 0) {
+            return existing.equals(content);
+        }
+        final StringBuilder regex = new StringBuilder();
+        final String[] parts = content.split(Pattern.quote(volatileText), -1);
+        for (int i = 0; i < parts.length; i++) {
+            if (i > 0) {
+                regex.append("[^\\r\\n]*");
+            }
+            regex.append(Pattern.quote(parts[i]));
+        }
+        return Pattern.compile(regex.toString()).matcher(existing).matches();
+    }
+
+    /**
+     * Deletes stale files that are no longer generated, and saves the manifest.
+     * @param complete whether all files were generated, incomplete runs never delete files
+     * @throws IOException on errors writing the manifest
+     */
+    public synchronized void close(boolean complete) throws IOException {
+        if (manifestFile == null) {
+            return;
+        }
+        final String packageRoot = packageDirectory.getCanonicalPath() + File.separator;
+        final Properties properties = new Properties();
+        for (Map.Entry<String, Entry> entry : previous.entrySet()) {
+            final String path = entry.getKey();
+            if (current.containsKey(path)) {
+                continue;
+            }
+            final File file = new File(outputDirectory, path);
+            if (!file.isFile() || !file.getCanonicalPath().startsWith(packageRoot)) {
+                // already removed, or not generated by this execution
+                continue;
+            }
+            if (!entry.getValue().fileHash.equals(hash(file))) {
+                // modified after it was generated, stop tracking it
+                if (complete) {
+                    log.warn("Not deleting modified stale file " + file);
+                    continue;
+                }
+            } else if (complete && pruneStaleFiles) {
+                if (file.delete()) {
+                    log.debug("Deleted stale file " + file);
+                    deleteEmptyDirectories(file.getParentFile());
+                    deleted++;
+                    continue;
+                }
+                log.warn("Unable to delete stale file " + file);
+            }
+            // keep tracking the file, so a later run can delete it
+            properties.setProperty(path, entry.getValue().toString());
+        }
+        for (Map.Entry<String, Entry> entry : current.entrySet()) {
+            properties.setProperty(entry.getKey(), entry.getValue().toString());
+        }
+
+        // store sorted and without a date, so the manifest is reproducible
+        final StringWriter buffer = new StringWriter();
+        properties.store(buffer, null);
+        final List<String> lines = new ArrayList<String>();
+        for (String line : buffer.toString().split("\\r?\\n")) {
+            if (line.length() > 0 && !line.startsWith("#")) {
+                lines.add(line);
+            }
+        }
+        Collections.sort(lines);
+
+        final Writer writer = new OutputStreamWriter(new FileOutputStream(manifestFile), "ISO-8859-1");
+        try {
+            writer.write("# Files generated by camel-salesforce-maven-plugin\n");
+            for (String line : lines) {
+                writer.write(line);
+                writer.write('\n');
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    // removes subdirectories of the package directory emptied by pruning
+    private void deleteEmptyDirectories(File directory) throws IOException {
+        final String root = packageDirectory.getCanonicalPath();
+        while (directory != null && !directory.getCanonicalPath().equals(root)) {
+            final String[] children = directory.list();
+            if (children == null || children.length > 0 || !directory.delete()) {
+                break;
+            }
+            directory = directory.getParentFile();
+        }
+    }
+
+    public int getWritten() {
+        return count(Boolean.TRUE);
+    }
+
+    public int getUnchanged() {
+        return count(Boolean.FALSE);
+    }
+
+    private int count(Boolean result) {
+        int count = 0;
+        for (Boolean value : results.values()) {
+            if (value.equals(result)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public synchronized int getDeleted() {
+        return deleted;
+    }
+
+    /**
+     * Checks that every file recorded in the manifest exists and was not modified since it was generated.
+     * @return true if a previous run generated files, and they are all intact
+     * @throws IOException on read errors
+     */
+    public boolean isIntact() throws IOException {
+        if (previous.isEmpty()) {
+            return false;
+        }
+        for (Map.Entry<String, Entry> entry : previous.entrySet()) {
+            final File file = new File(outputDirectory, entry.getKey());
+            if (!file.isFile() || !entry.getValue().fileHash.equals(hash(file))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns a revision of the content generated in this run, which only changes
+     * when the metadata or configuration used for generation changes.
+     */
+    public String getRevision() {
+        final StringBuilder builder = new StringBuilder();
+        for (Map.Entry<String, Entry> entry : new TreeMap<String, Entry>(current).entrySet()) {
+            builder.append(entry.getKey()).append('=').append(entry.getValue().contentHash).append('\n');
+        }
+        return hash(builder.toString().getBytes());
+    }
+
+    public String getStatistics() {
+        return String.format("%s files written, %s unchanged, %s deleted", getWritten(), getUnchanged(),
+            getDeleted());
+    }
+
+    private String getPath(File file) throws IOException {
+        final String root = outputDirectory.getCanonicalPath() + File.separator;
+        final String path = file.getCanonicalPath();
+        if (!path.startsWith(root)) {
+            throw new IOException(file + " is not in output directory " + outputDirectory);
+        }
+        return path.substring(root.length()).replace(File.separatorChar, '/');
+    }
+
+    private static String hash(File file) throws IOException {
+        return hash(DescriptionFetcher.readFully(new FileInputStream(file)));
+    }
+
+    static String hash(byte[] bytes) {
+        return toHex(createDigest().digest(bytes));
+    }
+
+    static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String toHex(byte[] digest) {
+        final StringBuilder hex = new StringBuilder();
+        for (byte b : digest) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    private static final class Entry {
+
+        private final String contentHash;
+        private final String fileHash;
+
+        Entry(String contentHash, String fileHash) {
+            this.contentHash = contentHash;
+            this.fileHash = fileHash;
+        }
+
+        static Entry parse(String value) {
+            final int index = value.indexOf(':');
+            return index > 0 ? new Entry(value.substring(0, index), value.substring(index + 1)) : null;
+        }
+
+        @Override
+        public String toString() {
+            return contentHash + ":" + fileHash;
+        }
+    }
+}
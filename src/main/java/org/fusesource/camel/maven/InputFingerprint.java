@@ -0,0 +1,201 @@
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.camel.maven;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * Fingerprint of the inputs of a generate run, like plugin configuration, templates and metadata snapshots,
+ * stored next to the generated sources with the {@link MetadataRevision} of the Salesforce metadata used.
+ * A rerun with the same fingerprint and intact outputs can skip rendering if Salesforce returns the same
+ * metadata, or skip login and metadata retrieval too, until the metadata is due for revalidation.
+ */
+public class InputFingerprint {
+
+    static final String FINGERPRINT = ".camel-salesforce-fingerprint.properties";
+
+    private static final String INPUTS = "inputs";
+    private static final String OUTPUT_REVISION = "outputRevision";
+    private static final String METADATA_REVISION = "metadataRevision";
+    private static final String CHECKED = "checked";
+
+    private final File file;
+    private final Map<String, String> inputs = new TreeMap<String, String>();
+    private final Properties previous = new Properties();
+
+    /**
+     * Creates a fingerprint for an output directory, reading the previous fingerprint if there is one.
+     * @param outputDirectory output directory
+     * @throws IOException on errors reading the previous fingerprint
+     */
+    public InputFingerprint(File outputDirectory) throws IOException {
+        this.file = new File(outputDirectory, FINGERPRINT);
+        if (file.isFile()) {
+            final InputStream in = new FileInputStream(file);
+            try {
+                previous.load(in);
+            } finally {
+                in.close();
+            }
+        }
+    }
+
+    /**
+     * Adds an input value, arrays and maps are added in a stable order.
+     * @param name input name
+     * @param value input value, may be null
+     */
+    public void add(String name, Object value) {
+        final String text;
+        if (value instanceof Object[]) {
+            text = Arrays.toString((Object[]) value);
+        } else if (value instanceof Map) {
+            text = new TreeMap<Object, Object>((Map<?, ?>) value).toString();
+        } else {
+            text = String.valueOf(value);
+        }
+        inputs.put(name, text);
+    }
+
+    /**
+     * Adds the content of a resource, like a template.
+     * @param name input name
+     * @param in resource stream, closed after reading
+     * @throws IOException on read errors
+     */
+    public void addContent(String name, InputStream in) throws IOException {
+        inputs.put(name, GeneratedFiles.hash(DescriptionFetcher.readFully(in)));
+    }
+
+    /**
+     * Adds the revision of a file or directory tree, using names, sizes and modification times.
+     * @param name input name
+     * @param root file or directory
+     */
+    public void addFile(String name, File root) {
+        final StringBuilder builder = new StringBuilder();
+        appendRevision(builder, root, "");
+        inputs.put(name, GeneratedFiles.hash(builder.toString().getBytes()));
+    }
+
+    private static void appendRevision(StringBuilder builder, File file, String path) {
+        if (file.isDirectory()) {
+            final String[] names = file.list();
+            if (names != null) {
+                Arrays.sort(names);
+                for (String name : names) {
+                    appendRevision(builder, new File(file, name), path + "/" + name);
+                }
+            }
+        } else {
+            builder.append(path).append(':').append(file.length()).append(':').append(file.lastModified())
+                .append('\n');
+        }
+    }
+
+    /**
+     * Returns the hash of all inputs.
+     */
+    public String getInputs() {
+        return GeneratedFiles.hash(inputs.toString().getBytes());
+    }
+
+    /**
+     * Checks whether the previous run had the same inputs, and its metadata does not need revalidation.
+     * @param revalidationInterval metadata revalidation interval in milliseconds, negative for never
+     * @return true if the previous run is up to date
+     */
+    public boolean isUpToDate(long revalidationInterval) {
+        if (!getInputs().equals(previous.getProperty(INPUTS))) {
+            return false;
+        }
+        if (revalidationInterval < 0) {
+            return true;
+        }
+        return System.currentTimeMillis() - getChecked() < revalidationInterval;
+    }
+
+    /**
+     * Returns when the metadata used by the previous run was last checked, 0 if unknown.
+     */
+    public long getChecked() {
+        try {
+            return Long.parseLong(previous.getProperty(CHECKED, "0"));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Returns the revision of the sources generated by the previous run, null if unknown.
+     */
+    public String getOutputRevision() {
+        return previous.getProperty(OUTPUT_REVISION);
+    }
+
+    /**
+     * Returns the revision of the Salesforce metadata used by the previous run,
+     * null if unknown or if it used a metadata snapshot.
+     */
+    public String getMetadataRevision() {
+        return previous.getProperty(METADATA_REVISION);
+    }
+
+    /**
+     * Removes the previous fingerprint, so an incomplete run is never considered up to date.
+     * @throws IOException if the fingerprint cannot be removed
+     */
+    public void invalidate() throws IOException {
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Unable to delete " + file);
+        }
+    }
+
+    /**
+     * Saves the fingerprint after a complete run.
+     * @param outputRevision revision of the generated sources, see {@link GeneratedFiles#getRevision()}
+     * @param metadataRevision revision of the Salesforce metadata, see {@link MetadataRevision#getRevision()},
+     *                         null for metadata snapshots
+     * @throws IOException on write errors
+     */
+    public void save(String outputRevision, String metadataRevision) throws IOException {
+        final long checked = System.currentTimeMillis();
+        final Properties properties = new Properties();
+        properties.setProperty(INPUTS, getInputs());
+        properties.setProperty(OUTPUT_REVISION, outputRevision);
+        if (metadataRevision != null) {
+            properties.setProperty(METADATA_REVISION, metadataRevision);
+        }
+        properties.setProperty(CHECKED, String.valueOf(checked));
+
+        final OutputStream out = new FileOutputStream(file);
+        try {
+            properties.store(out, "Inputs of camel-salesforce-maven-plugin, last checked " + new Date(checked));
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.camel.maven;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Java expressions that read and write field values with the Jackson streaming API,
+ * rendered into generated serializers and deserializers.
+ * Scalar types use the parser and generator directly, other types like dates are delegated to the ObjectMapper.
+ */
+public class JsonAccessors {
+
+    private static final Map<String, String> READERS = new HashMap<String, String>();
+    private static final Map<String, String> WRITERS = new HashMap<String, String>();
+
+    static {
+        READERS.put("String", "jp.getText()");
+        READERS.put("Boolean", "jp.getBooleanValue()");
+        READERS.put("Integer", "jp.getIntValue()");
+        READERS.put("Long", "jp.getLongValue()");
+        READERS.put("Short", "jp.getShortValue()");
+        READERS.put("Byte", "jp.getByteValue()");
+        READERS.put("Double", "jp.getDoubleValue()");
+        READERS.put("Float", "jp.getFloatValue()");
+        READERS.put("java.math.BigDecimal", "jp.getDecimalValue()");
+        READERS.put("java.math.BigInteger", "jp.getBigIntegerValue()");
+
+        WRITERS.put("String", "jgen.writeString(%s)");
+        WRITERS.put("Boolean", "jgen.writeBoolean(%s)");
+        WRITERS.put("Integer", "jgen.writeNumber(%s.intValue())");
+        WRITERS.put("Long", "jgen.writeNumber(%s.longValue())");
+        WRITERS.put("Short", "jgen.writeNumber(%s.intValue())");
+        WRITERS.put("Byte", "jgen.writeNumber(%s.intValue())");
+        WRITERS.put("Double", "jgen.writeNumber(%s.doubleValue())");
+        WRITERS.put("Float", "jgen.writeNumber(%s.floatValue())");
+        WRITERS.put("java.math.BigDecimal", "jgen.writeNumber(%s)");
+        WRITERS.put("java.math.BigInteger", "jgen.writeNumber(%s)");
+    }
+
+    /**
+     * Returns an expression reading a non null value of a field from the current token of parser {@code jp}.
+     * @param field field model
+     * @return Java expression
+     */
+    public String getReader(FieldModel field) {
+        if (field.isPicklist()) {
+            return field.getJavaType() + ".fromValue(jp.getText())";
+        }
+        final String reader = READERS.get(field.getJavaType());
+        return reader != null ? reader : "jp.readValueAs(" + field.getJavaType() + ".class)";
+    }
+
+    /**
+     * Returns a statement writing a non null value of a field with generator {@code jgen}.
+     * @param field field model
+     * @param value Java expression for the value
+     * @return Java statement, without the terminating semicolon
+     */
+    public String getWriter(FieldModel field, String value) {
+        if (field.isPicklist()) {
+            return "jgen.writeString(" + value + ".value())";
+        }
+        final String writer = WRITERS.get(field.getJavaType());
+        return writer != null ? String.format(writer, value) : "provider.defaultSerializeValue(" + value + ", jgen)";
+    }
+}
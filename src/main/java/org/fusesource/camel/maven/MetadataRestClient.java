@@ -0,0 +1,480 @@
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.camel.maven;
+
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.io.ByteArrayBuffer;
+import org.fusesource.camel.component.salesforce.api.SalesforceException;
+import org.fusesource.camel.component.salesforce.internal.SalesforceSession;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Salesforce REST client for all metadata requests made by the goals, used instead of the Camel
+ * {@link org.fusesource.camel.component.salesforce.internal.client.DefaultRestClient}.
+ * The Camel client buffers every response in a ContentExchange, has no way to send request headers
+ * like If-Modified-Since or Accept-Encoding or to read response headers like Last-Modified and
+ * Sforce-Limit-Info, and has no Composite Batch resource. This client sends Composite Batch and conditional
+ * describe requests, and shares the Jetty {@link HttpClient} and {@link SalesforceSession} with the Camel
+ * client, logging in again once if the access token has expired. Requests are thread safe, so
+ * {@link DescriptionFetcher} can keep several describes in flight on one client.
+ * Responses are streamed, gzip compressed unless disabled,
+ * and every request goes through an optional {@link ApiLimitThrottle}.
+ */
+public class MetadataRestClient {
+
+    // Composite Batch resource was introduced in API version 34.0
+    private static final double MIN_BATCH_VERSION = 34.0;
+    private static final String SERVICES_DATA = "/services/data/v";
+    private static final String APPLICATION_JSON_UTF8 = "application/json;charset=utf-8";
+    private static final int SC_UNAUTHORIZED = 401;
+    private static final int SC_FORBIDDEN = 403;
+    private static final String IF_MODIFIED_SINCE = "If-Modified-Since";
+    private static final String LAST_MODIFIED = "Last-Modified";
+    private static final String ACCEPT_ENCODING = "Accept-Encoding";
+    private static final String CONTENT_ENCODING = "Content-Encoding";
+    private static final String GZIP = "gzip";
+    private static final String LIMIT_INFO = "Sforce-Limit-Info";
+    private static final String REQUEST_LIMIT_EXCEEDED = "REQUEST_LIMIT_EXCEEDED";
+    private static final int MAX_LIMIT_RETRIES = 5;
+
+    public static final int SC_NOT_MODIFIED = 304;
+
+    private final HttpClient httpClient;
+    private final SalesforceSession session;
+    private final String version;
+    private final long readTimeout;
+    private final RequestStatistics statistics = new RequestStatistics();
+    private final AtomicLong bytesReceived = new AtomicLong();
+    private final AtomicLong bytesDecoded = new AtomicLong();
+
+    private ApiLimitThrottle throttle;
+    private RetryPolicy retryPolicy = new RetryPolicy(0, 1000, 60000);
+    private boolean compression = true;
+
+    /**
+     * Creates a client.
+     * @param httpClient started Jetty client
+     * @param session logged in session
+     * @param version Salesforce API version
+     * @param readTimeout maximum wait in milliseconds for response headers and between content chunks
+     */
+    public MetadataRestClient(HttpClient httpClient, SalesforceSession session, String version, long readTimeout) {
+        this.httpClient = httpClient;
+        this.session = session;
+        this.version = version;
+        this.readTimeout = readTimeout;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public void setThrottle(ApiLimitThrottle throttle) {
+        this.throttle = throttle;
+    }
+
+    public ApiLimitThrottle getThrottle() {
+        return throttle;
+    }
+
+    /**
+     * Sets the retry policy for idempotent GET requests, by default they are not retried.
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    public RequestStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Enables gzip compressed responses, enabled by default.
+     */
+    public void setCompression(boolean compression) {
+        this.compression = compression;
+    }
+
+    /**
+     * Returns response bytes received on the wire.
+     */
+    public long getBytesReceived() {
+        return bytesReceived.get();
+    }
+
+    /**
+     * Returns response bytes after decompression.
+     */
+    public long getBytesDecoded() {
+        return bytesDecoded.get();
+    }
+
+    public String getTransferStatistics() {
+        return String.format("received %s KB, %s KB uncompressed", bytesReceived.get() / 1024,
+            bytesDecoded.get() / 1024);
+    }
+
+    public boolean isBatchSupported() {
+        try {
+            return Double.parseDouble(version) >= MIN_BATCH_VERSION;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the URL for an SObject describe, relative to the services data root,
+     * as required for Composite Batch subrequests.
+     */
+    public String describePath(String objectName) {
+        return "v" + version + "/sobjects/" + objectName + "/describe";
+    }
+
+    /**
+     * Gets all SObjects.
+     * @return response with streamed getGlobalObjects content
+     * @throws SalesforceException on HTTP or Salesforce error
+     */
+    public Response getGlobalObjects() throws SalesforceException {
+        return execute("globalObjects", "GET", "/sobjects/", null, null);
+    }
+
+    /**
+     * Posts a Composite Batch request.
+     * @param body JSON body with batchRequests
+     * @return batch response content
+     * @throws SalesforceException on HTTP or Salesforce error
+     */
+    public byte[] batch(byte[] body) throws SalesforceException {
+        try {
+            return execute("batch", "POST", "/composite/batch", body, null).getContent();
+        } catch (IOException e) {
+            throw new SalesforceException("Error reading Composite Batch response: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Gets an SObject description, conditionally if a modification date is given.
+     * @param objectName SObject name
+     * @param ifModifiedSince value for the If-Modified-Since header, may be null
+     * @return response with streamed content, with status {@link #SC_NOT_MODIFIED} and no content
+     * if the description has not changed
+     * @throws SalesforceException on HTTP or Salesforce error
+     */
+    public Response getDescription(String objectName, String ifModifiedSince) throws SalesforceException {
+        return execute(objectName, "GET", "/sobjects/" + objectName + "/describe/", null, ifModifiedSince);
+    }
+
+    /**
+     * Returns the Salesforce org id, which prefixes OAuth access tokens,
+     * or the instance host if the token does not carry one.
+     */
+    public String getOrgId() throws SalesforceException {
+        final String accessToken = getAccessToken();
+        final int index = accessToken.indexOf('!');
+        if (index > 0) {
+            return accessToken.substring(0, index);
+        }
+        return session.getInstanceUrl().replaceFirst("^https?://", "").replaceAll("[^A-Za-z0-9.-]", "_");
+    }
+
+    /**
+     * Sends a request, logging in again once on 401, backing off on request limit errors,
+     * and retrying GET requests after connection failures, timeouts and transient server errors.
+     * Only retries count against the maximum retries of the {@link RetryPolicy}, logins and request limit
+     * backoffs don't. The deadline of the retry policy covers all attempts and reading the returned content.
+     * Failures while reading the content of a successful response, after this method returned,
+     * are not retried, they are thrown by the content stream.
+     * @param key SObject name or resource name for statistics
+     */
+    protected Response execute(String key, String method, String path, byte[] body, String ifModifiedSince)
+        throws SalesforceException {
+
+        final long start = System.currentTimeMillis();
+        final long deadline = start + retryPolicy.getDeadline();
+        final boolean idempotent = "GET".equals(method);
+        boolean loggedIn = false;
+        int limitRetries = 0;
+        // attempts include logins and limit backoffs, only failures count as retries
+        int attempts = 0;
+        int failures = 0;
+        try {
+            while (true) {
+                attempts++;
+                String failure = null;
+                int status = 0;
+                if (throttle != null) {
+                    throttle.acquire();
+                }
+                // successful responses release the throttle when their content is read or closed
+                boolean streaming = false;
+                try {
+                    final String accessToken = getAccessToken();
+                    try {
+                        final StreamingExchange exchange =
+                            send(method, path, body, ifModifiedSince, accessToken, deadline);
+                        if (throttle != null) {
+                            throttle.update(exchange.getResponseFields().getStringField(LIMIT_INFO));
+                        }
+
+                        status = exchange.getResponseStatus();
+                        final InputStream content;
+                        try {
+                            content = decode(exchange, status);
+                        } catch (IOException e) {
+                            exchange.cancel();
+                            throw e;
+                        }
+                        if (status == SC_NOT_MODIFIED || (status >= 200 && status < 300)) {
+                            streaming = throttle != null;
+                            return new Response(status,
+                                streaming ? new ReleasingInputStream(content, throttle) : content,
+                                exchange.getResponseFields().getStringField(LAST_MODIFIED));
+                        }
+
+                        failure = new String(DescriptionFetcher.readFully(content), "UTF-8");
+                        if (status == SC_UNAUTHORIZED && !loggedIn) {
+                            // token expired, login again and retry once
+                            session.login(accessToken);
+                            loggedIn = true;
+                            continue;
+                        }
+                        if (status == SC_FORBIDDEN && failure.contains(REQUEST_LIMIT_EXCEEDED)
+                            && throttle != null && limitRetries < MAX_LIMIT_RETRIES) {
+                            throttle.backoff(++limitRetries, failure);
+                            continue;
+                        }
+                    } catch (IOException e) {
+                        // connection failures, timeouts and broken compressed content
+                        status = 0;
+                        failure = e.getMessage();
+                    }
+                } finally {
+                    if (throttle != null && !streaming) {
+                        throttle.release();
+                    }
+                }
+
+                // transport failures have status 0
+                failures++;
+                final boolean retryable = idempotent && (status == 0 || retryPolicy.isRetryable(status));
+                final long delay = retryable
+                    ? retryPolicy.getDelay(failures, deadline - System.currentTimeMillis()) : -1;
+                if (delay < 0) {
+                    final String msg = String.format("Error %s %s%s: %s", method, path,
+                        failures > 1 ? " after " + failures + " attempts" : "", failure);
+                    throw new SalesforceException(msg, status);
+                }
+                sleep(delay);
+            }
+        } finally {
+            statistics.record(key, attempts, System.currentTimeMillis() - start);
+        }
+    }
+
+    private static void sleep(long delay) throws SalesforceException {
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SalesforceException("Interrupted while waiting to retry", e);
+        }
+    }
+
+    private StreamingExchange send(String method, String path, byte[] body, String ifModifiedSince,
+                                   String accessToken, long deadline) throws SalesforceException, IOException {
+
+        final long remaining = deadline - System.currentTimeMillis();
+        if (remaining <= 0) {
+            throw new SocketTimeoutException("Deadline exceeded");
+        }
+
+        // stream response content, instead of buffering large describe responses
+        final StreamingExchange exchange = new StreamingExchange(readTimeout, deadline);
+        exchange.setMethod(method);
+        exchange.setURL(session.getInstanceUrl() + SERVICES_DATA + version + path);
+        exchange.setRequestHeader("Authorization", "OAuth " + accessToken);
+        exchange.setRequestHeader("Accept", APPLICATION_JSON_UTF8);
+        if (compression) {
+            exchange.setRequestHeader(ACCEPT_ENCODING, GZIP);
+        }
+        // the exchange expires at the deadline, even while content is streamed
+        exchange.setTimeout(remaining);
+        if (ifModifiedSince != null) {
+            exchange.setRequestHeader(IF_MODIFIED_SINCE, ifModifiedSince);
+        }
+        if (body != null) {
+            exchange.setRequestContentType(APPLICATION_JSON_UTF8);
+            exchange.setRequestContent(new ByteArrayBuffer(body));
+        }
+
+        try {
+            httpClient.send(exchange);
+            exchange.awaitHeaders(Math.min(remaining, readTimeout));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            exchange.cancel();
+            throw new SalesforceException("Interrupted during " + method + " " + path, e);
+        }
+        return exchange;
+    }
+
+    // counts bytes on the wire and after decompression, reads the gzip header if content is compressed
+    private InputStream decode(StreamingExchange exchange, int status) throws IOException {
+        final InputStream received = new CountingInputStream(exchange.getResponseStream(), bytesReceived);
+        final String encoding = exchange.getResponseFields().getStringField(CONTENT_ENCODING);
+        if (status != SC_NOT_MODIFIED && encoding != null && GZIP.equalsIgnoreCase(encoding.trim())) {
+            return new CountingInputStream(new GZIPInputStream(received, 8192), bytesDecoded);
+        }
+        return new CountingInputStream(received, bytesDecoded);
+    }
+
+    private String getAccessToken() throws SalesforceException {
+        final String accessToken = session.getAccessToken();
+        return accessToken != null ? accessToken : session.login(null);
+    }
+
+    /**
+     * Response status, content and the Last-Modified header.
+     */
+    public static class Response {
+
+        private final int status;
+        private final InputStream content;
+        private final String lastModified;
+
+        public Response(int status, InputStream content, String lastModified) {
+            this.status = status;
+            this.content = content;
+            this.lastModified = lastModified;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        /**
+         * Returns response content as a stream, which must be closed after use.
+         */
+        public InputStream getContentStream() {
+            return content;
+        }
+
+        /**
+         * Reads and closes response content.
+         */
+        public byte[] getContent() throws IOException {
+            return DescriptionFetcher.readFully(content);
+        }
+
+        public String getLastModified() {
+            return lastModified;
+        }
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+
+        private final AtomicLong count;
+
+        CountingInputStream(InputStream in, AtomicLong count) {
+            super(in);
+            this.count = count;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int b = super.read();
+            if (b != -1) {
+                count.incrementAndGet();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            final int read = super.read(b, off, len);
+            if (read > 0) {
+                count.addAndGet(read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            final long skipped = super.skip(n);
+            count.addAndGet(skipped);
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+
+    // releases a throttle request slot once, at the end of the content or when it is closed
+    private static class ReleasingInputStream extends FilterInputStream {
+
+        private final ApiLimitThrottle throttle;
+        private boolean released;
+
+        ReleasingInputStream(InputStream in, ApiLimitThrottle throttle) {
+            super(in);
+            this.throttle = throttle;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int b = super.read();
+            if (b == -1) {
+                release();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            final int read = super.read(b, off, len);
+            if (read == -1) {
+                release();
+            }
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                release();
+            }
+        }
+
+        private synchronized void release() {
+            if (!released) {
+                released = true;
+                throttle.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.camel.maven;
+
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Revision of the Salesforce metadata used by a generate run, a hash of the raw describe responses
+ * of all generated SObjects. Describe responses are hashed while they are parsed, so a run with unchanged
+ * inputs can compare the metadata it retrieved with the metadata of the previous run.
+ * Thread safe.
+ */
+public class MetadataRevision {
+
+    private final Map<String, String> hashes = new ConcurrentSkipListMap<String, String>();
+
+    /**
+     * Wraps a describe response stream, to hash its content while it is read.
+     * @param content describe response
+     * @return stream to read instead, pass it to {@link #add} after reading it completely
+     */
+    public DigestInputStream track(InputStream content) {
+        return new DigestInputStream(content, GeneratedFiles.createDigest());
+    }
+
+    /**
+     * Adds the hash of a completely read describe response.
+     * @param objectName SObject name
+     * @param content stream returned by {@link #track}
+     */
+    public void add(String objectName, DigestInputStream content) {
+        hashes.put(objectName, GeneratedFiles.toHex(content.getMessageDigest().digest()));
+    }
+
+    /**
+     * Returns the revision of all added describe responses, independent of the order they were added in.
+     */
+    public String getRevision() {
+        return GeneratedFiles.hash(hashes.toString().getBytes());
+    }
+}
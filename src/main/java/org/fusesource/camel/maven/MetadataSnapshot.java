@@ -0,0 +1,151 @@
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.camel.maven;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Salesforce metadata snapshot, for generating POJOs without connecting to Salesforce.
+ * A snapshot is either a directory or a zip file with the layout:
+ * <pre>
+ * snapshot.properties          format version, API version, org id and creation date
+ * globalObjects.json           getGlobalObjects response
+ * sobjects/&lt;name&gt;.json        getDescription response for every SObject
+ * </pre>
+ * Zip entries are read through the zip central directory, so a single description
+ * can be read without inflating the whole file.
+ */
+public class MetadataSnapshot {
+
+    public static final int FORMAT_VERSION = 1;
+
+    public static final String PROPERTIES_ENTRY = "snapshot.properties";
+    public static final String GLOBAL_OBJECTS_ENTRY = "globalObjects.json";
+    public static final String SOBJECTS_PREFIX = "sobjects/";
+    public static final String JSON_EXT = ".json";
+
+    public static final String FORMAT_VERSION_PROPERTY = "formatVersion";
+    public static final String API_VERSION_PROPERTY = "apiVersion";
+    public static final String ORG_ID_PROPERTY = "orgId";
+    public static final String CREATED_PROPERTY = "created";
+
+    private final File directory;
+    private final ZipFile zipFile;
+    private final Properties properties;
+
+    private MetadataSnapshot(File directory, ZipFile zipFile) throws IOException {
+        this.directory = directory;
+        this.zipFile = zipFile;
+        this.properties = new Properties();
+
+        final InputStream in = openEntry(PROPERTIES_ENTRY, false);
+        if (in != null) {
+            try {
+                properties.load(in);
+            } finally {
+                in.close();
+            }
+            final int formatVersion = Integer.parseInt(
+                properties.getProperty(FORMAT_VERSION_PROPERTY, String.valueOf(FORMAT_VERSION)));
+            if (formatVersion > FORMAT_VERSION) {
+                throw new IOException(String.format("Unsupported snapshot format version %s, expected %s or earlier",
+                    formatVersion, FORMAT_VERSION));
+            }
+        }
+    }
+
+    /**
+     * Opens a snapshot directory or zip file.
+     * @param file snapshot directory or zip file
+     * @return metadata snapshot, which must be closed after use
+     * @throws IOException if the snapshot cannot be opened
+     */
+    public static MetadataSnapshot open(File file) throws IOException {
+        if (file.isDirectory()) {
+            return new MetadataSnapshot(file, null);
+        } else if (file.isFile()) {
+            final ZipFile zipFile = new ZipFile(file);
+            try {
+                return new MetadataSnapshot(null, zipFile);
+            } catch (IOException e) {
+                zipFile.close();
+                throw e;
+            }
+        }
+        throw new FileNotFoundException("Missing snapshot " + file);
+    }
+
+    /**
+     * Returns snapshot properties, empty for snapshot directories created by hand.
+     */
+    public Properties getProperties() {
+        return properties;
+    }
+
+    /**
+     * Opens the raw getGlobalObjects response.
+     * @return getGlobalObjects response stream, which must be closed after use
+     * @throws IOException if the response is missing or cannot be read
+     */
+    public InputStream openGlobalObjects() throws IOException {
+        return openEntry(GLOBAL_OBJECTS_ENTRY, true);
+    }
+
+    /**
+     * Opens the raw describe response for an SObject.
+     * @param objectName SObject name
+     * @return describe response stream, which must be closed after use
+     * @throws IOException if the description is missing or cannot be read
+     */
+    public InputStream openDescription(String objectName) throws IOException {
+        return openEntry(SOBJECTS_PREFIX + objectName + JSON_EXT, true);
+    }
+
+    public void close() {
+        if (zipFile != null) {
+            try {
+                zipFile.close();
+            } catch (IOException ignore) {}
+        }
+    }
+
+    private InputStream openEntry(String entryName, boolean required) throws IOException {
+        if (zipFile != null) {
+            final ZipEntry entry = zipFile.getEntry(entryName);
+            if (entry != null) {
+                return zipFile.getInputStream(entry);
+            }
+        } else {
+            final File file = new File(directory, entryName.replace('/', File.separatorChar));
+            if (file.isFile()) {
+                return new BufferedInputStream(new FileInputStream(file));
+            }
+        }
+        if (required) {
+            throw new FileNotFoundException("Missing " + entryName + " in snapshot");
+        }
+        return null;
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.camel.maven;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes a {@link MetadataSnapshot} zip file.
+ * Entries are compressed and streamed to a temporary file as they are written,
+ * which replaces the snapshot file when the writer is closed.
+ * All write methods are thread safe.
+ */
+public class MetadataSnapshotWriter {
+
+    private final File file;
+    private final File tempFile;
+    private final ZipOutputStream out;
+    private int descriptionCount;
+    private long uncompressedSize;
+
+    public MetadataSnapshotWriter(File file) throws IOException {
+        this.file = file;
+        final File parent = file.getAbsoluteFile().getParentFile();
+        if (!parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Unable to create " + parent);
+        }
+        this.tempFile = new File(parent, file.getName() + ".part");
+        this.out = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+        this.out.setLevel(Deflater.BEST_COMPRESSION);
+    }
+
+    public void writeGlobalObjects(byte[] content) throws IOException {
+        writeEntry(MetadataSnapshot.GLOBAL_OBJECTS_ENTRY, content);
+    }
+
+    /**
+     * Writes a describe response. The response is read before taking the lock on the zip file,
+     * so concurrent responses are still downloaded in parallel.
+     * @param objectName SObject name
+     * @param content describe response stream, not closed by this method
+     * @throws IOException on read or write errors
+     */
+    public void writeDescription(String objectName, InputStream content) throws IOException {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        final byte[] bytes = new byte[8192];
+        int read;
+        while ((read = content.read(bytes)) != -1) {
+            buffer.write(bytes, 0, read);
+        }
+        writeEntry(MetadataSnapshot.SOBJECTS_PREFIX + objectName + MetadataSnapshot.JSON_EXT, buffer.toByteArray());
+        synchronized (this) {
+            descriptionCount++;
+        }
+    }
+
+    public synchronized int getDescriptionCount() {
+        return descriptionCount;
+    }
+
+    public synchronized long getUncompressedSize() {
+        return uncompressedSize;
+    }
+
+    /**
+     * Writes snapshot properties and replaces the snapshot file.
+     * @param properties snapshot properties, format version is added
+     * @throws IOException on error
+     */
+    public synchronized void close(Properties properties) throws IOException {
+        properties.setProperty(MetadataSnapshot.FORMAT_VERSION_PROPERTY,
+            String.valueOf(MetadataSnapshot.FORMAT_VERSION));
+        out.putNextEntry(new ZipEntry(MetadataSnapshot.PROPERTIES_ENTRY));
+        properties.store(out, "Salesforce metadata snapshot");
+        out.closeEntry();
+        out.close();
+
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Unable to replace " + file);
+        }
+        if (!tempFile.renameTo(file)) {
+            throw new IOException("Unable to rename " + tempFile + " to " + file);
+        }
+    }
+
+    /**
+     * Discards a partially written snapshot.
+     */
+    public synchronized void abort() {
+        try {
+            out.close();
+        } catch (IOException ignore) {}
+        tempFile.delete();
+    }
+
+    private synchronized void writeEntry(String name, byte[] content) throws IOException {
+        out.putNextEntry(new ZipEntry(name));
+        out.write(content);
+        out.closeEntry();
+        uncompressedSize += content.length;
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.camel.maven;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable generation model for a picklist enumeration.
+ */
+public final class PicklistModel {
+
+    private final String fieldName;
+    private final String typeName;
+    private final List<Constant> constants;
+    private final boolean open;
+
+    public PicklistModel(String fieldName, String typeName, List<Constant> constants) {
+        this(fieldName, typeName, constants, false);
+    }
+
+    public PicklistModel(String fieldName, String typeName, List<Constant> constants, boolean open) {
+        this.fieldName = fieldName;
+        this.typeName = typeName;
+        this.constants = Collections.unmodifiableList(new ArrayList<Constant>(constants));
+        this.open = open;
+    }
+
+    public String getFieldName() {
+        return fieldName;
+    }
+
+    /**
+     * Returns the name of the generated enum.
+     */
+    public String getTypeName() {
+        return typeName;
+    }
+
+    public List<Constant> getConstants() {
+        return constants;
+    }
+
+    /**
+     * Returns whether the picklist is generated as an open class that keeps unknown values,
+     * instead of an enum.
+     */
+    public boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * Picklist value and its Java enum constant name.
+     */
+    public static final class Constant {
+
+        private final String value;
+        private final String name;
+
+        public Constant(String value, String name) {
+            this.value = value;
+            this.name = name;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+}
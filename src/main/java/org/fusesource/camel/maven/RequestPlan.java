@@ -0,0 +1,76 @@
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.camel.maven;
+
+import java.util.Collection;
+
+/**
+ * Metadata requests needed for a configuration.
+ * The getGlobalObjects request is only needed when Objects are selected by pattern or attributes,
+ * or all Objects are included,
+ * explicitly included Objects are described directly.
+ */
+public class RequestPlan {
+
+    private final boolean globalObjects;
+    private final int objectCount;
+    private final int describeRequests;
+
+    /**
+     * Creates a plan.
+     * @param globalObjects whether getGlobalObjects is requested
+     * @param objectNames SObjects to describe
+     * @param fetcher fetcher that will describe the SObjects
+     */
+    public RequestPlan(boolean globalObjects, Collection<String> objectNames, DescriptionFetcher fetcher) {
+        this.globalObjects = globalObjects;
+        this.objectCount = objectNames.size();
+        this.describeRequests = fetcher.getPlannedRequests(objectNames);
+    }
+
+    /**
+     * Returns whether the getGlobalObjects request is needed to select Objects.
+     * @param includes names of included Objects
+     * @param includePattern pattern for included Objects
+     * @param objectFilter attribute and suffix filter
+     */
+    public static boolean isGlobalObjectsRequired(String[] includes, String includePattern,
+                                                  SObjectFilter objectFilter) {
+        // excludes and name filters can be applied to explicit includes without the global list,
+        // but attribute filters need the attributes from it
+        return includes == null || includes.length == 0
+            || (includePattern != null && !includePattern.trim().isEmpty())
+            || objectFilter.hasAttributes();
+    }
+
+    public boolean isGlobalObjects() {
+        return globalObjects;
+    }
+
+    public int getDescribeRequests() {
+        return describeRequests;
+    }
+
+    public int getTotalRequests() {
+        return (globalObjects ? 1 : 0) + describeRequests;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s metadata requests, %s getGlobalObjects and %s describe requests for %s Objects",
+            getTotalRequests(), globalObjects ? 1 : 0, describeRequests, objectCount);
+    }
+}
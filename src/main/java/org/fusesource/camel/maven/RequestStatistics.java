@@ -0,0 +1,126 @@
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.camel.maven;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Latency and retries of metadata requests, per SObject or resource,
+ * so slow or flaky Objects can be told apart from a generally slow connection.
+ */
+public class RequestStatistics {
+
+    private final Map<String, Entry> entries = new HashMap<String, Entry>();
+    private int requests;
+    private int retries;
+    private long totalLatency;
+
+    /**
+     * Records a completed or failed request.
+     * @param key SObject name or resource
+     * @param attempts number of attempts, including the first
+     * @param latency time to response headers in milliseconds, including retries
+     */
+    public synchronized void record(String key, int attempts, long latency) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            entry = new Entry(key);
+            entries.put(key, entry);
+        }
+        entry.requests++;
+        entry.retries += attempts - 1;
+        entry.latency += latency;
+        entry.maxLatency = Math.max(entry.maxLatency, latency);
+
+        requests++;
+        retries += attempts - 1;
+        totalLatency += latency;
+    }
+
+    public synchronized int getRequests() {
+        return requests;
+    }
+
+    public synchronized int getRetries() {
+        return retries;
+    }
+
+    /**
+     * Returns entries sorted by maximum latency, slowest first.
+     */
+    public synchronized List<Entry> getSlowest(int count) {
+        final List<Entry> sorted = new ArrayList<Entry>(entries.values());
+        Collections.sort(sorted, new Comparator<Entry>() {
+            public int compare(Entry e1, Entry e2) {
+                return e1.maxLatency < e2.maxLatency ? 1 : (e1.maxLatency == e2.maxLatency ? 0 : -1);
+            }
+        });
+        return sorted.subList(0, Math.min(count, sorted.size()));
+    }
+
+    /**
+     * Returns entries for keys that needed retries.
+     */
+    public synchronized List<Entry> getRetried() {
+        final List<Entry> retried = new ArrayList<Entry>();
+        for (Entry entry : entries.values()) {
+            if (entry.retries > 0) {
+                retried.add(entry);
+            }
+        }
+        return retried;
+    }
+
+    public synchronized String getStatistics() {
+        return String.format("%s requests, %s retries, %s ms average latency",
+            requests, retries, requests == 0 ? 0 : totalLatency / requests);
+    }
+
+    public static class Entry {
+
+        private final String key;
+        private int requests;
+        private int retries;
+        private long latency;
+        private long maxLatency;
+
+        Entry(String key) {
+            this.key = key;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public int getRetries() {
+            return retries;
+        }
+
+        public long getMaxLatency() {
+            return maxLatency;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s %s ms (%s retries)", key, maxLatency, retries);
+        }
+    }
+}
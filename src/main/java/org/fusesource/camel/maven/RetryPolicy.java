@@ -0,0 +1,75 @@
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.camel.maven;
+
+import java.util.Random;
+
+/**
+ * Bounded retries with jittered exponential backoff, within an overall deadline per request.
+ * Only idempotent requests are retried, after connection failures, timeouts and transient server errors.
+ */
+public class RetryPolicy {
+
+    private static final long MAX_DELAY = 30000;
+
+    private final int maxRetries;
+    private final long baseDelay;
+    private final long deadline;
+    private final Random random = new Random();
+
+    /**
+     * Creates a retry policy.
+     * @param maxRetries maximum retries after the first attempt, 0 disables retries
+     * @param baseDelay delay in milliseconds before the first retry, doubled for every further retry
+     * @param deadline maximum time in milliseconds for a request including all retries
+     */
+    public RetryPolicy(int maxRetries, long baseDelay, long deadline) {
+        this.maxRetries = Math.max(0, maxRetries);
+        this.baseDelay = Math.max(1, baseDelay);
+        this.deadline = deadline;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public long getDeadline() {
+        return deadline;
+    }
+
+    /**
+     * Returns whether an HTTP status is worth retrying.
+     */
+    public boolean isRetryable(int status) {
+        // 408 request timeout, 429 too many requests, and transient server errors
+        return status == 408 || status == 429 || status == 500 || status == 502 || status == 503 || status == 504;
+    }
+
+    /**
+     * Returns the delay before a retry, or -1 if no more retries are allowed.
+     * @param retry retry number, starting with 1
+     * @param remaining time left until the deadline in milliseconds
+     */
+    public long getDelay(int retry, long remaining) {
+        if (retry > maxRetries) {
+            return -1;
+        }
+        // randomize half the delay, so concurrent requests that failed together do not retry together
+        final long ceiling = Math.min(MAX_DELAY, baseDelay << Math.min(retry - 1, 16));
+        final long delay = ceiling / 2 + (long) (random.nextDouble() * (ceiling / 2 + 1));
+        return delay < remaining ? delay : -1;
+    }
+}
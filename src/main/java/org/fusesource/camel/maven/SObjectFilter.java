@@ -0,0 +1,76 @@
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.camel.maven;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.fusesource.camel.component.salesforce.api.dto.SObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Filters SObjects by attributes from the getGlobalObjects response, like queryable or custom,
+ * and by name suffixes, like History or Share, before they are described.
+ */
+public class SObjectFilter {
+
+    private final AttributeMatcher<SObject> attributes;
+    private final List<String> excludeSuffixes = new ArrayList<String>();
+
+    /**
+     * Creates a filter.
+     * @param attributes required SObject attribute values by attribute name, like queryable=true, may be null
+     * @param excludeSuffixes suffixes of excluded SObject names, may be null
+     * @throws MojoExecutionException on unknown attributes or empty suffixes
+     */
+    public SObjectFilter(Map<String, String> attributes, String[] excludeSuffixes) throws MojoExecutionException {
+        this.attributes = new AttributeMatcher<SObject>(SObject.class, attributes);
+        if (excludeSuffixes != null) {
+            for (String suffix : excludeSuffixes) {
+                suffix = suffix.trim();
+                if (suffix.isEmpty()) {
+                    throw new MojoExecutionException("Invalid empty suffix in excludeSuffixes");
+                }
+                this.excludeSuffixes.add(suffix);
+            }
+        }
+    }
+
+    /**
+     * Returns whether the filter needs SObject attributes, which are only available from getGlobalObjects.
+     */
+    public boolean hasAttributes() {
+        return !attributes.isEmpty();
+    }
+
+    public boolean isEmpty() {
+        return attributes.isEmpty() && excludeSuffixes.isEmpty();
+    }
+
+    public boolean accept(SObject sObject) throws MojoExecutionException {
+        return acceptName(sObject.getName()) && attributes.matches(sObject, sObject.getName());
+    }
+
+    public boolean acceptName(String name) {
+        for (String suffix : excludeSuffixes) {
+            if (name.endsWith(suffix)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.camel.maven;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable generation model for an SObject, with all Java names and types resolved,
+ * so templates and other emitters only render it.
+ * Created once per SObject by {@link CamelSalesforceMojo.GeneratorUtility#createModel}.
+ */
+public final class SObjectModel {
+
+    private final String name;
+    private final List<FieldModel> baseFields;
+    private final List<FieldModel> updateableBaseFields;
+    private final List<FieldModel> fields;
+    private final List<PicklistModel> picklists;
+
+    public SObjectModel(String name, List<FieldModel> fields, List<PicklistModel> picklists) {
+        this(name, Collections.<FieldModel>emptyList(), Collections.<FieldModel>emptyList(), fields, picklists);
+    }
+
+    public SObjectModel(String name, List<FieldModel> baseFields, List<FieldModel> updateableBaseFields,
+                        List<FieldModel> fields, List<PicklistModel> picklists) {
+        this.name = name;
+        this.baseFields = Collections.unmodifiableList(new ArrayList<FieldModel>(baseFields));
+        this.updateableBaseFields = Collections.unmodifiableList(new ArrayList<FieldModel>(updateableBaseFields));
+        this.fields = Collections.unmodifiableList(new ArrayList<FieldModel>(fields));
+        this.picklists = Collections.unmodifiableList(new ArrayList<PicklistModel>(picklists));
+    }
+
+    /**
+     * Returns the SObject name, which is also the name of the generated class.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the fields inherited from AbstractSObjectBase, with capitalized property names
+     * for their accessors, used by emitters that serialize complete SObjects.
+     */
+    public List<FieldModel> getBaseFields() {
+        return baseFields;
+    }
+
+    /**
+     * Returns the base fields that are updateable for this SObject, like Name or OwnerId.
+     */
+    public List<FieldModel> getUpdateableBaseFields() {
+        return updateableBaseFields;
+    }
+
+    /**
+     * Returns the fields tracked for modifications, updateable base fields followed by the generated fields.
+     */
+    public List<FieldModel> getTrackedFields() {
+        final List<FieldModel> trackedFields = new ArrayList<FieldModel>(updateableBaseFields);
+        trackedFields.addAll(fields);
+        return trackedFields;
+    }
+
+    /**
+     * Returns the generated fields, without fields inherited from AbstractSObjectBase.
+     */
+    public List<FieldModel> getFields() {
+        return fields;
+    }
+
+    /**
+     * Returns the base fields followed by the generated fields.
+     */
+    public List<FieldModel> getAllFields() {
+        final List<FieldModel> allFields = new ArrayList<FieldModel>(baseFields);
+        allFields.addAll(fields);
+        return allFields;
+    }
+
+    /**
+     * Returns the picklists of generated fields, in field order.
+     */
+    public List<PicklistModel> getPicklists() {
+        return picklists;
+    }
+
+    public boolean hasPicklists() {
+        return !picklists.isEmpty();
+    }
+
+    /**
+     * Returns whether any picklist is generated as an enum.
+     */
+    public boolean hasEnumPicklists() {
+        for (PicklistModel picklist : picklists) {
+            if (!picklist.isOpen()) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.camel.maven;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.RedirectListener;
+import org.fusesource.camel.component.salesforce.SalesforceLoginConfig;
+import org.fusesource.camel.component.salesforce.api.SalesforceException;
+import org.fusesource.camel.component.salesforce.internal.SalesforceSession;
+
+/**
+ * Logged in Salesforce connection, with the HTTP client, session and REST client used by the goals.
+ */
+public class SalesforceConnection {
+
+    private final HttpClient httpClient;
+    private final SalesforceSession session;
+    private final MetadataRestClient metadataClient;
+
+    private SalesforceConnection(HttpClient httpClient, SalesforceSession session,
+                                 MetadataRestClient metadataClient) {
+        this.httpClient = httpClient;
+        this.session = session;
+        this.metadataClient = metadataClient;
+    }
+
+    /**
+     * Logs in to Salesforce and creates the REST client.
+     * @param loginConfig Salesforce login configuration
+     * @param version Salesforce API version
+     * @param connectTimeout connect timeout in milliseconds
+     * @param readTimeout response timeout in milliseconds
+     * @param tokenCache cache for reusing OAuth sessions, null to always login
+     * @param log Maven log
+     * @return open connection, which must be closed after use
+     * @throws MojoExecutionException on login or client errors
+     */
+    public static SalesforceConnection open(SalesforceLoginConfig loginConfig, String version,
+                                            int connectTimeout, int readTimeout, TokenCache tokenCache,
+                                            Log log)
+        throws MojoExecutionException {
+
+        // connect to Salesforce
+        final HttpClient httpClient = new HttpClient();
+        httpClient.registerListener(RedirectListener.class.getName());
+        httpClient.setConnectTimeout(connectTimeout);
+        httpClient.setIdleTimeout(readTimeout);
+        // default for login requests, metadata requests set their own deadlines
+        httpClient.setTimeout(readTimeout);
+        try {
+            httpClient.start();
+        } catch (Exception e) {
+            throw new MojoExecutionException("Error creating HTTP client: " + e.getMessage(), e);
+        }
+
+        final SalesforceSession session = tokenCache != null
+            ? new CachingSalesforceSession(httpClient, loginConfig, tokenCache, log)
+            : new SalesforceSession(httpClient, loginConfig);
+
+        log.info("Salesforce login...");
+        try {
+            session.login(null);
+        } catch (SalesforceException e) {
+            stopQuietly(session, httpClient);
+            String msg = "Salesforce login error " + e.getMessage();
+            throw new MojoExecutionException(msg, e);
+        }
+        log.info("Salesforce login successful");
+
+        // all metadata requests go through one client, which tracks API usage
+        return new SalesforceConnection(httpClient, session,
+            new MetadataRestClient(httpClient, session, version, readTimeout));
+    }
+
+    public HttpClient getHttpClient() {
+        return httpClient;
+    }
+
+    public SalesforceSession getSession() {
+        return session;
+    }
+
+    public MetadataRestClient getMetadataClient() {
+        return metadataClient;
+    }
+
+    public void close() {
+        stopQuietly(session, httpClient);
+    }
+
+    private static void stopQuietly(SalesforceSession session, HttpClient httpClient) {
+        // Salesforce session stop
+        try {
+            session.stop();
+        } catch (Exception ignore) {}
+
+        // release HttpConnections
+        try {
+            httpClient.stop();
+        } catch (Exception ignore) {}
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.camel.maven;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Salesforce metadata shared by the goal executions of a Maven session, like the modules of a reactor build,
+ * keyed by session, login URL, user name, API version and connection settings.
+ * Executions share the getGlobalObjects response, concurrent requests for the same SObject description
+ * are coalesced into a single HTTP call, and concurrent executions share one logged in connection.
+ * The connection is reference counted, and closed when the last execution using it releases it.
+ * Metadata of a session is dropped when a later session in the same JVM asks for shared metadata,
+ * like the next build in a Maven daemon or IDE.
+ */
+public class SharedMetadata {
+
+    private static final Map<String, SharedMetadata> REGISTRY = new HashMap<String, SharedMetadata>();
+
+    private final String session;
+    private final String key;
+    private final ConcurrentMap<String, Description> descriptions = new ConcurrentHashMap<String, Description>();
+    private final Object globalObjectsLock = new Object();
+
+    private SalesforceConnection connection;
+    private int references;
+    private byte[] globalObjects;
+
+    private SharedMetadata(String session, String key) {
+        this.session = session;
+        this.key = key;
+    }
+
+    /**
+     * Returns shared metadata for a Maven session, login, API version and connection settings,
+     * and drops the metadata of earlier sessions.
+     * Executions with different connection settings, like throttling or retries, do not share a connection.
+     * @param session identifies the Maven session, like its start time
+     */
+    public static SharedMetadata get(String session, String loginUrl, String userName, String version,
+                                     String settings) {
+        final String key = session + "|" + loginUrl + "|" + userName + "|" + version + "|" + settings;
+        synchronized (REGISTRY) {
+            // connections of earlier sessions are closed by their last execution, only their metadata is left
+            for (Iterator<SharedMetadata> i = REGISTRY.values().iterator(); i.hasNext(); ) {
+                if (!i.next().session.equals(session)) {
+                    i.remove();
+                }
+            }
+            SharedMetadata metadata = REGISTRY.get(key);
+            if (metadata == null) {
+                metadata = new SharedMetadata(session, key);
+                REGISTRY.put(key, metadata);
+            }
+            return metadata;
+        }
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Returns the shared connection, opening it if no other execution is using it.
+     * Other executions wait while it is opened. Every successful call must be followed by {@link #release()}.
+     * @param opener opens a connection
+     */
+    public synchronized SalesforceConnection getConnection(Callable<SalesforceConnection> opener) throws Exception {
+        if (connection == null) {
+            connection = opener.call();
+        }
+        references++;
+        return connection;
+    }
+
+    /**
+     * Releases the shared connection, and closes it if no other execution is using it.
+     * The next execution asking for the connection opens a new one.
+     * @return true if the connection was closed
+     */
+    public synchronized boolean release() {
+        if (references == 0) {
+            throw new IllegalStateException("Shared connection is not in use");
+        }
+        if (--references > 0) {
+            return false;
+        }
+        connection.close();
+        connection = null;
+        return true;
+    }
+
+    /**
+     * Returns the shared getGlobalObjects response, getting it if this is the first execution to ask for it.
+     * @param loader gets the getGlobalObjects response
+     */
+    public byte[] getGlobalObjects(Callable<byte[]> loader) throws Exception {
+        synchronized (globalObjectsLock) {
+            if (globalObjects == null) {
+                globalObjects = loader.call();
+            }
+            return globalObjects;
+        }
+    }
+
+    /**
+     * Returns a shared SObject description, which is retrieved by the first execution that claims it.
+     * @param name SObject name
+     */
+    public Description getDescription(String name) {
+        final Description description = new Description(name);
+        final Description existing = descriptions.putIfAbsent(name, description);
+        return existing != null ? existing : description;
+    }
+
+    /**
+     * Raw SObject description, retrieved once and shared by all executions.
+     */
+    public class Description extends FutureTask<byte[]> {
+
+        private final String name;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        private Description(String name) {
+            super(new Callable<byte[]>() {
+                public byte[] call() throws Exception {
+                    throw new IllegalStateException("Shared descriptions are completed by the execution that claims them");
+                }
+            });
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Claims this description, the first caller must retrieve it and complete or fail it,
+         * and other callers wait for it.
+         * @return true for the first caller
+         */
+        public boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
+
+        public void complete(byte[] content) {
+            set(content);
+        }
+
+        /**
+         * Fails the description, and removes it so a later execution can retry.
+         */
+        public void fail(Throwable cause) {
+            descriptions.remove(name, this);
+            setException(cause);
+        }
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.camel.maven;
+
+import org.eclipse.jetty.client.CachedExchange;
+import org.eclipse.jetty.io.Buffer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HTTP exchange that exposes response content as an {@link InputStream} while it is being received,
+ * instead of buffering the whole response like {@link org.eclipse.jetty.client.ContentExchange}.
+ * Content chunks are handed over through an unbounded queue, so the Jetty IO thread delivering them
+ * never waits for a slow reader and can serve other exchanges. Like with ContentExchange, memory use is
+ * bounded by the response size, and chunks are released as soon as they are read, or when the stream is closed.
+ */
+class StreamingExchange extends CachedExchange {
+
+    private static final byte[] END = new byte[0];
+
+    private final BlockingQueue<byte[]> chunks = new LinkedBlockingQueue<byte[]>();
+    private final CountDownLatch headersLatch = new CountDownLatch(1);
+    private final long readTimeout;
+    private final long deadline;
+
+    private volatile Throwable failure;
+    private volatile boolean closed;
+
+    /**
+     * Creates an exchange.
+     * @param readTimeout maximum wait in milliseconds between content chunks
+     * @param deadline time in milliseconds by which the whole response must have been read
+     */
+    StreamingExchange(long readTimeout, long deadline) {
+        super(true);
+        this.readTimeout = readTimeout;
+        this.deadline = deadline;
+    }
+
+    /**
+     * Waits for response headers.
+     * @param timeout maximum wait in milliseconds
+     * @throws IOException on timeout or connection failure
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void awaitHeaders(long timeout) throws IOException, InterruptedException {
+        if (!headersLatch.await(timeout, TimeUnit.MILLISECONDS)) {
+            cancel();
+            throw new SocketTimeoutException("Timeout waiting for response from " + getURI());
+        }
+        checkFailure();
+    }
+
+    /**
+     * Returns a stream with response content, which must be closed after use.
+     */
+    public InputStream getResponseStream() {
+        return new ResponseInputStream();
+    }
+
+    @Override
+    protected void onResponseHeaderComplete() throws IOException {
+        super.onResponseHeaderComplete();
+        headersLatch.countDown();
+    }
+
+    @Override
+    protected void onResponseContent(Buffer content) throws IOException {
+        enqueue(content.asArray());
+    }
+
+    @Override
+    protected void onResponseComplete() throws IOException {
+        enqueue(END);
+        headersLatch.countDown();
+    }
+
+    @Override
+    protected void onConnectionFailed(Throwable x) {
+        fail(x);
+    }
+
+    @Override
+    protected void onException(Throwable x) {
+        fail(x);
+    }
+
+    @Override
+    protected void onExpire() {
+        fail(new SocketTimeoutException("Request expired for " + getURI()));
+    }
+
+    private void fail(Throwable x) {
+        failure = x;
+        chunks.clear();
+        chunks.offer(END);
+        headersLatch.countDown();
+    }
+
+    // called by Jetty IO threads, never blocks
+    private void enqueue(byte[] chunk) {
+        // reader has given up, discard the rest of the response
+        if (!closed) {
+            chunks.offer(chunk);
+        }
+    }
+
+    private void checkFailure() throws IOException {
+        final Throwable x = failure;
+        if (x instanceof IOException) {
+            throw (IOException) x;
+        } else if (x != null) {
+            throw new IOException("Error receiving response from " + getURI() + ": " + x.getMessage(), x);
+        }
+    }
+
+    private class ResponseInputStream extends InputStream {
+
+        private byte[] chunk;
+        private int position;
+        private boolean eof;
+
+        @Override
+        public int read() throws IOException {
+            final byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : (b[0] & 0xff);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (!eof && (chunk == null || position == chunk.length)) {
+                final long remaining = deadline - System.currentTimeMillis();
+                try {
+                    chunk = remaining > 0 ? chunks.poll(Math.min(readTimeout, remaining), TimeUnit.MILLISECONDS)
+                        : chunks.poll();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while reading response from " + getURI());
+                }
+                if (chunk == null) {
+                    cancel();
+                    throw new SocketTimeoutException((remaining > readTimeout ? "Read timeout" : "Deadline exceeded")
+                        + " for response from " + getURI());
+                }
+                position = 0;
+                if (chunk == END) {
+                    eof = true;
+                    checkFailure();
+                }
+            }
+            if (eof) {
+                return -1;
+            }
+            final int count = Math.min(len, chunk.length - position);
+            System.arraycopy(chunk, position, b, off, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            if (!eof) {
+                cancel();
+            }
+            chunks.clear();
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.camel.maven;
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Properties;
+
+/**
+ * On-disk cache of OAuth access tokens and instance URLs, keyed by login URL, client id and user name,
+ * so builds can reuse a session instead of logging in every time.
+ * The cache directory and files are readable and writable by the owner only.
+ */
+public class TokenCache {
+
+    private static final String ACCESS_TOKEN = "accessToken";
+    private static final String INSTANCE_URL = "instanceUrl";
+
+    private final File directory;
+    private final Log log;
+
+    public TokenCache(File directory, Log log) {
+        this.directory = directory;
+        this.log = log;
+    }
+
+    /**
+     * Gets a cached session.
+     * @return access token and instance URL, or null if none is cached
+     */
+    public String[] get(String loginUrl, String clientId, String userName) {
+        final File file = getFile(loginUrl, clientId, userName);
+        if (!file.isFile()) {
+            return null;
+        }
+        final Properties properties = new Properties();
+        try {
+            final InputStream in = new FileInputStream(file);
+            try {
+                properties.load(in);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            log.warn("Ignoring unreadable token cache entry " + file + ": " + e.getMessage());
+            return null;
+        }
+        final String accessToken = properties.getProperty(ACCESS_TOKEN);
+        final String instanceUrl = properties.getProperty(INSTANCE_URL);
+        if (accessToken == null || instanceUrl == null) {
+            return null;
+        }
+        return new String[] { accessToken, instanceUrl };
+    }
+
+    /**
+     * Stores a session, replacing any cached session for the same login.
+     */
+    public void put(String loginUrl, String clientId, String userName, String accessToken, String instanceUrl) {
+        final Properties properties = new Properties();
+        properties.setProperty(ACCESS_TOKEN, accessToken);
+        properties.setProperty(INSTANCE_URL, instanceUrl);
+
+        final File file = getFile(loginUrl, clientId, userName);
+        File tempFile = null;
+        try {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Error creating directory " + directory);
+            }
+            restrictToOwner(directory);
+            directory.setExecutable(true, true);
+
+            // restrict permissions before the token is written
+            tempFile = File.createTempFile(file.getName(), ".tmp", directory);
+            restrictToOwner(tempFile);
+            final OutputStream out = new FileOutputStream(tempFile);
+            try {
+                properties.store(out, "Salesforce session for " + userName);
+            } finally {
+                out.close();
+            }
+            if (!tempFile.renameTo(file) && !(file.delete() && tempFile.renameTo(file))) {
+                throw new IOException("Error renaming " + tempFile + " to " + file);
+            }
+        } catch (IOException e) {
+            log.warn("Error caching Salesforce session: " + e.getMessage());
+            if (tempFile != null) {
+                tempFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Removes a cached session, after it was rejected.
+     */
+    public void remove(String loginUrl, String clientId, String userName) {
+        getFile(loginUrl, clientId, userName).delete();
+    }
+
+    private File getFile(String loginUrl, String clientId, String userName) {
+        // hash the key, so user names do not show up in file names
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            final byte[] hash = digest.digest((loginUrl + "\n" + clientId + "\n" + userName).getBytes("UTF-8"));
+            final StringBuilder name = new StringBuilder();
+            for (byte b : hash) {
+                name.append(String.format("%02x", b));
+            }
+            return new File(directory, name.append(".properties").toString());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void restrictToOwner(File file) throws IOException {
+        // clear permissions for everyone, then grant them to the owner
+        if (!(file.setReadable(false, false) && file.setReadable(true, true)
+            && file.setWritable(false, false) && file.setWritable(true, true))) {
+            throw new IOException("Error restricting permissions of " + file);
+        }
+        file.setExecutable(false, false);
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.camel.maven;
+
+import com.thoughtworks.xstream.annotations.XStreamAlias;
+import com.thoughtworks.xstream.annotations.XStreamOmitField;
+import org.fusesource.camel.component.salesforce.api.dto.AbstractSObjectBase;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Java expressions that read and write field values with XStream readers and writers,
+ * rendered into generated XStream converters.
+ * Scalar types are converted from element text inline, other types like dates are delegated to XStream.
+ */
+public class XmlAccessors {
+
+    private static final Map<String, String> READERS = new HashMap<String, String>();
+
+    // XStream element names of AbstractSObjectBase fields, without omitted fields
+    private static final Map<String, String> BASE_ELEMENTS = new HashMap<String, String>();
+
+    static {
+        READERS.put("Boolean", "Boolean.valueOf(text)");
+        READERS.put("Integer", "Integer.valueOf(text)");
+        READERS.put("Long", "Long.valueOf(text)");
+        READERS.put("Short", "Short.valueOf(text)");
+        READERS.put("Byte", "Byte.valueOf(text)");
+        READERS.put("Double", "Double.valueOf(text)");
+        READERS.put("Float", "Float.valueOf(text)");
+        READERS.put("java.math.BigDecimal", "new java.math.BigDecimal(text)");
+        READERS.put("java.math.BigInteger", "new java.math.BigInteger(text)");
+
+        for (Field field : AbstractSObjectBase.class.getDeclaredFields()) {
+            if (field.isAnnotationPresent(XStreamOmitField.class)) {
+                continue;
+            }
+            final XStreamAlias alias = field.getAnnotation(XStreamAlias.class);
+            BASE_ELEMENTS.put(field.getName(), alias != null ? alias.value() : field.getName());
+        }
+    }
+
+    /**
+     * Returns the fields XStream reads and writes for an SObject, base fields omitted from XML are skipped.
+     * @param model SObject model
+     * @return base fields and generated fields
+     */
+    public List<FieldModel> getFields(SObjectModel model) {
+        final List<FieldModel> fields = new ArrayList<FieldModel>();
+        for (FieldModel field : model.getBaseFields()) {
+            if (BASE_ELEMENTS.containsKey(field.getName())) {
+                fields.add(field);
+            }
+        }
+        fields.addAll(model.getFields());
+        return fields;
+    }
+
+    /**
+     * Returns the XML element name of a field.
+     * @param field field model
+     * @return element name
+     */
+    public String getElementName(FieldModel field) {
+        final String element = BASE_ELEMENTS.get(field.getName());
+        return element != null ? element : field.getName();
+    }
+
+    /**
+     * Checks whether a field value is converted from element text, instead of by XStream.
+     * @param field field model
+     * @return true for Strings, picklists and numbers
+     */
+    public boolean isText(FieldModel field) {
+        return getReader(field) != null;
+    }
+
+    /**
+     * Returns an expression converting element text in variable {@code text} to a field value,
+     * or null if the value has to be converted by XStream. Empty text is read as null, except for Strings.
+     * @param field field model
+     * @return Java expression, or null
+     */
+    public String getReader(FieldModel field) {
+        if ("String".equals(field.getJavaType())) {
+            return "text";
+        }
+        final String reader = field.isPicklist() ? field.getJavaType() + ".fromValue(text)" :
+            READERS.get(field.getJavaType());
+        return reader != null ? "text.length() == 0 ? null : " + reader : null;
+    }
+
+    /**
+     * Returns a statement writing a non null field value with writer {@code writer},
+     * or with context {@code context} for values converted by XStream.
+     * @param field field model
+     * @param value Java expression for the value
+     * @return Java statement, without the terminating semicolon
+     */
+    public String getWriter(FieldModel field, String value) {
+        if ("String".equals(field.getJavaType())) {
+            return "writer.setValue(" + value + ")";
+        } else if (field.isPicklist()) {
+            return "writer.setValue(" + value + ".value())";
+        } else if (READERS.containsKey(field.getJavaType())) {
+            return "writer.setValue(" + value + ".toString())";
+        }
+        return "context.convertAnother(" + value + ")";
+    }
+}
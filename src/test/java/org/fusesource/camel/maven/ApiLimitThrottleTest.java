@@ -0,0 +1,74 @@
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.camel.maven;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.fusesource.camel.component.salesforce.api.SalesforceException;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ApiLimitThrottleTest {
+
+    @Test
+    public void testCallBudgetExhausted() throws Exception {
+        final ApiLimitThrottle throttle = new ApiLimitThrottle("2", 4, new SystemStreamLog());
+        call(throttle, null);
+        call(throttle, null);
+        try {
+            throttle.acquire();
+            Assert.fail("Budget of 2 calls should be used up");
+        } catch (SalesforceException expected) {
+            Assert.assertTrue(expected.getMessage(), expected.getMessage().contains("2 calls"));
+        }
+    }
+
+    @Test
+    public void testPercentBudgetStartsWithBuild() throws Exception {
+        // 10% of 10000 is a budget of 1000 calls, counted from the org usage when the build started
+        final ApiLimitThrottle throttle = new ApiLimitThrottle("10%", 4, new SystemStreamLog());
+        call(throttle, "api-usage=5001/10000");
+        call(throttle, "api-usage=5900/10000");
+        Assert.assertEquals("Requests should be slowed down close to the budget", 1, throttle.getConcurrency());
+
+        call(throttle, "api-usage=6000/10000");
+        try {
+            throttle.acquire();
+            Assert.fail("Budget of 10% should be used up");
+        } catch (SalesforceException expected) {
+            Assert.assertTrue(expected.getMessage(), expected.getMessage().contains("10.0% of the daily limit"));
+        }
+    }
+
+    @Test
+    public void testBackoffCoolDown() throws Exception {
+        final ApiLimitThrottle throttle = new ApiLimitThrottle(null, 4, new SystemStreamLog());
+        call(throttle, "api-usage=10/10000");
+        Assert.assertEquals(4, throttle.getConcurrency());
+
+        throttle.backoff(0, "REQUEST_LIMIT_EXCEEDED");
+        Assert.assertEquals(1, throttle.getConcurrency());
+        // low org usage does not end the cool-down
+        call(throttle, "api-usage=11/10000");
+        Assert.assertEquals("Backoff should last until the cool-down has passed", 1, throttle.getConcurrency());
+    }
+
+    private static void call(ApiLimitThrottle throttle, String limitInfo) throws SalesforceException {
+        throttle.acquire();
+        throttle.update(limitInfo);
+        throttle.release();
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.camel.maven;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.eclipse.jetty.client.HttpClient;
+import org.fusesource.camel.component.salesforce.SalesforceLoginConfig;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+
+public class CachingSalesforceSessionTest {
+
+    private MockSalesforceServer server;
+    private HttpClient httpClient;
+    private TokenCache tokenCache;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockSalesforceServer();
+        httpClient = MockSalesforceServer.startHttpClient();
+        final File directory = new File("target/token-cache-test");
+        CamelSalesforceMojoSnapshotTest.deleteDirectory(directory);
+        tokenCache = new TokenCache(directory, new SystemStreamLog());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        httpClient.stop();
+        server.stop();
+    }
+
+    @Test
+    public void testReuseCachedSession() throws Exception {
+        final CachingSalesforceSession first = createSession();
+        final String accessToken = first.login(null);
+        Assert.assertEquals(1, server.getLogins());
+
+        // the next build reuses the cached session without logging in
+        final CachingSalesforceSession second = createSession();
+        Assert.assertEquals(accessToken, second.login(null));
+        Assert.assertEquals(server.getUrl(), second.getInstanceUrl());
+        Assert.assertEquals(1, server.getLogins());
+
+        server.respondDescription("Merchandise__c");
+        describe(second);
+    }
+
+    @Test
+    public void testLoginAgainWhenExpired() throws Exception {
+        final String expiredToken = createSession().login(null);
+        server.expireSessions();
+
+        // the first request with the cached token is rejected, and leads to a new login
+        final CachingSalesforceSession session = createSession();
+        Assert.assertEquals(expiredToken, session.login(null));
+        server.respondDescription("Merchandise__c");
+        describe(session);
+        Assert.assertEquals(2, server.getLogins());
+        Assert.assertFalse(expiredToken.equals(session.getAccessToken()));
+
+        // the new session replaces the rejected one in the cache
+        Assert.assertEquals(session.getAccessToken(), createSession().login(null));
+        Assert.assertEquals(2, server.getLogins());
+    }
+
+    @Test
+    public void testCacheKeyedByLogin() throws Exception {
+        final SalesforceLoginConfig config = server.getLoginConfig();
+        tokenCache.put(config.getLoginUrl(), config.getClientId(), config.getUserName(), "token", "instanceUrl");
+        Assert.assertArrayEquals(new String[] { "token", "instanceUrl" },
+            tokenCache.get(config.getLoginUrl(), config.getClientId(), config.getUserName()));
+        Assert.assertNull(tokenCache.get(config.getLoginUrl(), config.getClientId(), "other@example.com"));
+        Assert.assertNull(tokenCache.get(config.getLoginUrl(), "otherClientId", config.getUserName()));
+
+        tokenCache.remove(config.getLoginUrl(), config.getClientId(), config.getUserName());
+        Assert.assertNull(tokenCache.get(config.getLoginUrl(), config.getClientId(), config.getUserName()));
+    }
+
+    private CachingSalesforceSession createSession() {
+        return new CachingSalesforceSession(httpClient, server.getLoginConfig(), tokenCache, new SystemStreamLog());
+    }
+
+    private void describe(CachingSalesforceSession session) throws Exception {
+        final MetadataRestClient client = new MetadataRestClient(httpClient, session,
+            MockSalesforceServer.VERSION, 5000);
+        Assert.assertArrayEquals(MockSalesforceServer.readDescription("Merchandise__c"),
+            client.getDescription("Merchandise__c", null).getContent());
+    }
+}
@@ -20,9 +20,13 @@ import org.apache.maven.plugin.logging.SystemStreamLog;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.Arrays;
 import java.util.Properties;
 
 public class CamelSalesforceMojoIntegrationTest {
@@ -31,38 +35,84 @@ public class CamelSalesforceMojoIntegrationTest {
 
     @Test
     public void testExecute() throws Exception {
-        CamelSalesforceMojo mojo = new CamelSalesforceMojo();
+        CamelSalesforceMojo mojo = createMojo(new File("target/generated-sources/camel-salesforce"));
+
+        // generate code, files from previous runs that are no longer generated are pruned
+        mojo.execute();
+
+        // validate generated code
+        // check that it was generated
+        Assert.assertTrue("Output directory was not created", mojo.outputDirectory.exists());
+        Assert.assertTrue("Generated files manifest was not created",
+            new File(mojo.outputDirectory, GeneratedFiles.getManifestName(null, mojo.packageName)).exists());
+
+        // TODO check that the generated code compiles
+    }
+
+    @Test
+    public void testCompressedResponses() throws Exception {
+        // download all descriptions, with and without compression
+        CamelSalesforceMojo compressed = createMojo(
+            new File("target/generated-sources/camel-salesforce-compressed"));
+        compressed.compressResponses = true;
+        compressed.skipDescribeCache = true;
+        CamelSalesforceMojo uncompressed = createMojo(
+            new File("target/generated-sources/camel-salesforce-uncompressed"));
+        uncompressed.compressResponses = false;
+        uncompressed.skipDescribeCache = true;
+
+        CamelSalesforceMojoSnapshotTest.deleteDirectory(compressed.outputDirectory);
+        CamelSalesforceMojoSnapshotTest.deleteDirectory(uncompressed.outputDirectory);
+        compressed.execute();
+        uncompressed.execute();
+
+        // generated sources must be identical, apart from the generation date
+        File compressedDir = new File(compressed.outputDirectory, compressed.packageName.replace('.', '/'));
+        File uncompressedDir = new File(uncompressed.outputDirectory, uncompressed.packageName.replace('.', '/'));
+        String[] names = compressedDir.list();
+        Arrays.sort(names);
+        String[] uncompressedNames = uncompressedDir.list();
+        Arrays.sort(uncompressedNames);
+        Assert.assertArrayEquals(names, uncompressedNames);
+        for (String name : names) {
+            Assert.assertEquals("Generated source differs: " + name,
+                readSource(new File(compressedDir, name)), readSource(new File(uncompressedDir, name)));
+        }
+    }
+
+    private CamelSalesforceMojo createMojo(File outputDirectory) throws IllegalAccessException, IOException {
+        CamelSalesforceMojo mojo = MojoDefaults.apply(new CamelSalesforceMojo());
 
         mojo.setLog(new SystemStreamLog());
 
         // set login properties
         setLoginProperties(mojo);
 
-        // set defaults
+        // override defaults
         mojo.version = "27.0";
-        mojo.outputDirectory = new File("target/generated-sources/camel-salesforce");
-        mojo.packageName = "org.fusesource.camel.salesforce.dto";
+        mojo.outputDirectory = outputDirectory;
+        mojo.describeCacheDirectory = new File("target/describe-cache");
+        mojo.pruneStaleFiles = true;
 
         // set code generation properties
         mojo.includePattern = "(.*__c)|(PushTopic)";
+        return mojo;
+    }
 
-        // remove generated code directory
-        if (mojo.outputDirectory.exists()) {
-            // remove old files
-            for (File file : mojo.outputDirectory.listFiles()) {
-                file.delete();
+    private static String readSource(File file) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try {
+            StringBuilder source = new StringBuilder();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.startsWith(" * Generated on:")) {
+                    source.append(line).append('\n');
+                }
             }
-            mojo.outputDirectory.delete();
+            return source.toString();
+        } finally {
+            reader.close();
         }
-
-        // generate code
-        mojo.execute();
-
-        // validate generated code
-        // check that it was generated
-        Assert.assertTrue("Output directory was not created", mojo.outputDirectory.exists());
-
-        // TODO check that the generated code compiles
     }
 
     private void setLoginProperties(CamelSalesforceMojo mojo) throws IllegalAccessException, IOException {
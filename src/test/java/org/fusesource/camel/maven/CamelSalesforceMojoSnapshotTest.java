@@ -0,0 +1,524 @@
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.camel.maven;
+
+import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.io.naming.NoNameCoder;
+import com.thoughtworks.xstream.io.xml.XppDriver;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.fusesource.camel.component.salesforce.api.JodaTimeConverter;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.Module;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.node.ArrayNode;
+import org.codehaus.jackson.node.ObjectNode;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.HashMap;
+
+public class CamelSalesforceMojoSnapshotTest {
+
+    private static final String PACKAGE_NAME = "org.fusesource.camel.salesforce.dto";
+    private static final String PACKAGE_DIR = PACKAGE_NAME.replace('.', '/');
+    private static final File MERCHANDISE_RECORD = new File("src/test/resources/records/Merchandise__c.json");
+
+    @Test
+    public void testExecuteOffline() throws Exception {
+        final File outputDirectory = new File("target/generated-sources/camel-salesforce-snapshot");
+        deleteDirectory(outputDirectory);
+
+        final CamelSalesforceMojo mojo = createMojo(outputDirectory);
+        mojo.execute();
+
+        final File pkgDir = new File(outputDirectory, PACKAGE_DIR);
+        Assert.assertTrue("Merchandise__c was not generated", new File(pkgDir, "Merchandise__c.java").exists());
+        Assert.assertTrue("QueryRecordsMerchandise__c was not generated",
+            new File(pkgDir, "QueryRecordsMerchandise__c.java").exists());
+        Assert.assertTrue("CategoryEnum was not generated", new File(pkgDir, "CategoryEnum.java").exists());
+        Assert.assertTrue("CategoryEnum should use a value map",
+            readFile(new File(pkgDir, "CategoryEnum.java")).contains("VALUE_MAP.get(value)"));
+        Assert.assertTrue("PushTopic was not generated", new File(pkgDir, "PushTopic.java").exists());
+        Assert.assertFalse("Account should not be generated", new File(pkgDir, "Account.java").exists());
+    }
+
+    @Test
+    public void testObjectFilters() throws Exception {
+        final File outputDirectory = new File("target/generated-sources/camel-salesforce-filters");
+        deleteDirectory(outputDirectory);
+
+        // select custom Objects by attribute, instead of by pattern
+        final CamelSalesforceMojo mojo = createMojo(outputDirectory);
+        mojo.includePattern = null;
+        mojo.objectAttributes = new HashMap<String, String>();
+        mojo.objectAttributes.put("custom", "true");
+        mojo.objectAttributes.put("queryable", "true");
+        mojo.excludeSuffixes = new String[] { "History", "Share" };
+        mojo.execute();
+
+        final File pkgDir = new File(outputDirectory, PACKAGE_DIR);
+        Assert.assertTrue("Merchandise__c was not generated", new File(pkgDir, "Merchandise__c.java").exists());
+        Assert.assertFalse("PushTopic should not be generated", new File(pkgDir, "PushTopic.java").exists());
+        Assert.assertFalse("Account should not be generated", new File(pkgDir, "Account.java").exists());
+    }
+
+    @Test
+    public void testFieldFilters() throws Exception {
+        final File outputDirectory = new File("target/generated-sources/camel-salesforce-fields");
+        deleteDirectory(outputDirectory);
+
+        final CamelSalesforceMojo mojo = createMojo(outputDirectory);
+        mojo.fieldExcludes = new HashMap<String, String>();
+        mojo.fieldExcludes.put("Merchandise__c", "Description__c");
+        // skip formula fields
+        mojo.fieldAttributes = new HashMap<String, String>();
+        mojo.fieldAttributes.put("calculated", "false");
+        mojo.execute();
+
+        final String source = readFile(new File(outputDirectory, PACKAGE_DIR + "/Merchandise__c.java"));
+        Assert.assertTrue("Price__c was not generated", source.contains("getPrice__c()"));
+        Assert.assertFalse("Description__c should not be generated", source.contains("Description__c"));
+        Assert.assertFalse("Margin__c should not be generated", source.contains("Margin__c"));
+    }
+
+    @Test
+    public void testPruneStaleFiles() throws Exception {
+        final File outputDirectory = new File("target/generated-sources/camel-salesforce-prune");
+        deleteDirectory(outputDirectory);
+
+        createPruningMojo(outputDirectory).execute();
+        final File pkgDir = new File(outputDirectory, PACKAGE_DIR);
+        final File modified = new File(pkgDir, "QueryRecordsMerchandise__c.java");
+        final FileWriter writer = new FileWriter(modified, true);
+        try {
+            writer.write("// modified");
+        } finally {
+            writer.close();
+        }
+
+        // Merchandise__c drops out of the includes
+        final CamelSalesforceMojo mojo = createPruningMojo(outputDirectory);
+        mojo.includePattern = "PushTopic";
+        mojo.execute();
+
+        Assert.assertTrue("PushTopic was not generated", new File(pkgDir, "PushTopic.java").exists());
+        Assert.assertFalse("Merchandise__c was not deleted", new File(pkgDir, "Merchandise__c.java").exists());
+        Assert.assertFalse("CategoryEnum was not deleted", new File(pkgDir, "CategoryEnum.java").exists());
+        Assert.assertTrue("Modified QueryRecordsMerchandise__c should not be deleted", modified.exists());
+
+        // without pruning nothing is deleted
+        final CamelSalesforceMojo unpruned = createMojo(outputDirectory);
+        unpruned.includePattern = "Merchandise__c";
+        unpruned.execute();
+        unpruned.includePattern = "PushTopic";
+        unpruned.execute();
+        Assert.assertTrue("Merchandise__c should not be deleted", new File(pkgDir, "Merchandise__c.java").exists());
+    }
+
+    @Test
+    public void testPruneOnlyOwnFiles() throws Exception {
+        final File outputDirectory = new File("target/generated-sources/camel-salesforce-prune-shared");
+        deleteDirectory(outputDirectory);
+
+        // two executions generate different packages into the same output directory
+        final CamelSalesforceMojo first = createPruningMojo(outputDirectory);
+        first.executionId = "first";
+        first.includePattern = "Merchandise__c";
+        final CamelSalesforceMojo second = createPruningMojo(outputDirectory);
+        second.executionId = "second";
+        second.packageName = "org.fusesource.camel.salesforce.other";
+        second.includePattern = "PushTopic";
+        final File firstFile = new File(outputDirectory, PACKAGE_DIR + "/Merchandise__c.java");
+        final File secondFile = new File(outputDirectory, "org/fusesource/camel/salesforce/other/PushTopic.java");
+
+        for (int i = 0; i < 2; i++) {
+            first.execute();
+            second.execute();
+            Assert.assertTrue("Merchandise__c was deleted", firstFile.exists());
+            Assert.assertTrue("PushTopic was deleted", secondFile.exists());
+        }
+
+        // the same package generated by another execution is not pruned either
+        final CamelSalesforceMojo third = createPruningMojo(outputDirectory);
+        third.executionId = "third";
+        third.includePattern = "PushTopic";
+        third.execute();
+        Assert.assertTrue("Merchandise__c was deleted", firstFile.exists());
+    }
+
+    @Test
+    public void testSkipUnchanged() throws Exception {
+        final File outputDirectory = new File("target/generated-sources/camel-salesforce-unchanged");
+        deleteDirectory(outputDirectory);
+
+        createSkippingMojo(outputDirectory).execute();
+        final File fingerprint = new File(outputDirectory, InputFingerprint.FINGERPRINT);
+        Assert.assertTrue("Input fingerprint was not saved", fingerprint.exists());
+        final String saved = readFile(fingerprint);
+
+        // nothing changed, nothing is generated
+        createSkippingMojo(outputDirectory).execute();
+        Assert.assertEquals("Unchanged run should be skipped", saved, readFile(fingerprint));
+
+        // missing outputs are regenerated
+        final File generated = new File(outputDirectory, PACKAGE_DIR + "/Merchandise__c.java");
+        Assert.assertTrue(generated.delete());
+        createSkippingMojo(outputDirectory).execute();
+        Assert.assertTrue("Merchandise__c was not regenerated", generated.exists());
+
+        // configuration changes are regenerated
+        final CamelSalesforceMojo mojo = createSkippingMojo(outputDirectory);
+        mojo.includePattern = "PushTopic";
+        mojo.execute();
+        Assert.assertFalse("Merchandise__c was not deleted", generated.exists());
+
+        // without skipUnchanged every run checks metadata
+        final String checked = readFile(fingerprint);
+        Thread.sleep(10);
+        final CamelSalesforceMojo unskipped = createMojo(outputDirectory);
+        unskipped.includePattern = "PushTopic";
+        unskipped.execute();
+        Assert.assertFalse("Run without skipUnchanged should not be skipped", checked.equals(readFile(fingerprint)));
+    }
+
+    private static CamelSalesforceMojo createPruningMojo(File outputDirectory) {
+        final CamelSalesforceMojo mojo = createMojo(outputDirectory);
+        mojo.pruneStaleFiles = true;
+        return mojo;
+    }
+
+    private static CamelSalesforceMojo createSkippingMojo(File outputDirectory) {
+        final CamelSalesforceMojo mojo = createPruningMojo(outputDirectory);
+        mojo.skipUnchanged = true;
+        return mojo;
+    }
+
+    @Test
+    public void testReproducible() throws Exception {
+        final File[] outputDirectories = new File[] {
+            new File("target/generated-sources/camel-salesforce-reproducible1"),
+            new File("target/generated-sources/camel-salesforce-reproducible2")
+        };
+        for (File outputDirectory : outputDirectories) {
+            deleteDirectory(outputDirectory);
+            final CamelSalesforceMojo mojo = createMojo(outputDirectory);
+            mojo.reproducible = true;
+            mojo.pruneStaleFiles = true;
+            mojo.generatorThreads = 4;
+            mojo.execute();
+        }
+
+        final File pkgDir1 = new File(outputDirectories[0], PACKAGE_DIR);
+        final File pkgDir2 = new File(outputDirectories[1], PACKAGE_DIR);
+        final String[] names = pkgDir1.list();
+        Arrays.sort(names);
+        final String[] names2 = pkgDir2.list();
+        Arrays.sort(names2);
+        Assert.assertArrayEquals("Different files generated", names, names2);
+        for (String name : names) {
+            final String source = readFile(new File(pkgDir1, name));
+            Assert.assertEquals(name + " is not reproducible", source, readFile(new File(pkgDir2, name)));
+            Assert.assertFalse(name + " has a generation date", source.contains("Generated on"));
+        }
+        final String manifest = GeneratedFiles.getManifestName(null, PACKAGE_NAME);
+        Assert.assertEquals("Manifest is not reproducible",
+            readFile(new File(outputDirectories[0], manifest)), readFile(new File(outputDirectories[1], manifest)));
+    }
+
+    @Test
+    public void testDeclaredDefaults() {
+        final CamelSalesforceMojo mojo = MojoDefaults.apply(new CamelSalesforceMojo());
+        Assert.assertEquals("25.0", mojo.version);
+        Assert.assertEquals("org.fusesource.camel.salesforce.dto", mojo.packageName);
+        Assert.assertEquals(new File("target/generated-sources/camel-salesforce").getAbsoluteFile(),
+            mojo.outputDirectory);
+        Assert.assertEquals(3, mojo.maxRetries);
+        Assert.assertTrue(mojo.writeIfChanged);
+        Assert.assertFalse(mojo.pruneStaleFiles);
+        // Maven expressions are left to the build
+        Assert.assertNull(mojo.executionId);
+        Assert.assertNull(mojo.sessionStartTime);
+    }
+
+    @Test
+    public void testSourceDateEpoch() throws Exception {
+        Assert.assertEquals("Tue Jan 01 00:00:00 UTC 2013", CamelSalesforceMojo.formatSourceDateEpoch(" 1356998400 "));
+        Assert.assertNull(CamelSalesforceMojo.formatSourceDateEpoch(null));
+        Assert.assertNull(CamelSalesforceMojo.formatSourceDateEpoch(""));
+        try {
+            CamelSalesforceMojo.formatSourceDateEpoch("2013-01-01");
+            Assert.fail("Invalid SOURCE_DATE_EPOCH should be rejected");
+        } catch (MojoExecutionException expected) {
+            Assert.assertEquals("Invalid SOURCE_DATE_EPOCH 2013-01-01", expected.getMessage());
+        }
+    }
+
+    @Test
+    public void testJsonSerializers() throws Exception {
+        final File outputDirectory = new File("target/generated-sources/camel-salesforce-json");
+        deleteDirectory(outputDirectory);
+
+        final CamelSalesforceMojo mojo = createMojo(outputDirectory);
+        mojo.jsonSerializers = true;
+        mojo.execute();
+
+        final ClassLoader classLoader = SourceCompiler.compile(outputDirectory);
+        final Class<?> type = classLoader.loadClass(PACKAGE_NAME + ".Merchandise__c");
+        final ObjectMapper mapper = new ObjectMapper();
+        mapper.registerModule((Module) classLoader.loadClass(PACKAGE_NAME + ".SObjectJsonModule").newInstance());
+        final byte[] json = DescriptionFetcher.readFully(new FileInputStream(MERCHANDISE_RECORD));
+
+        final Object merchandise = SourceCompiler.invoke(classLoader.loadClass(PACKAGE_NAME + ".SObjectJsonModule"),
+            "readValue", mapper, json, type);
+        Assert.assertEquals("Widget", SourceCompiler.invoke(merchandise, "getName"));
+        Assert.assertEquals(Boolean.FALSE, SourceCompiler.invoke(merchandise, "isIsDeleted"));
+        Assert.assertEquals(9.99, SourceCompiler.invoke(merchandise, "getPrice__c"));
+        Assert.assertEquals("Home & Garden",
+            SourceCompiler.invoke(SourceCompiler.invoke(merchandise, "getCategory__c"), "value"));
+        Assert.assertEquals("Merchandise__c",
+            SourceCompiler.invoke(SourceCompiler.invoke(merchandise, "getAttributes"), "getType"));
+
+        // generated serializers write the same JSON as bean introspection
+        final ObjectMapper beanMapper = new ObjectMapper();
+        final Object expected = beanMapper.readValue(json, type);
+        final String written = mapper.writeValueAsString(merchandise);
+        Assert.assertEquals(beanMapper.readTree(beanMapper.writeValueAsString(expected)), beanMapper.readTree(written));
+        Assert.assertEquals(written, mapper.writeValueAsString(mapper.readValue(written, type)));
+
+        // unknown fields are skipped
+        final ObjectNode unknown = (ObjectNode) beanMapper.readTree(json);
+        final ArrayNode values = unknown.putObject("Unknown__c").putArray("values");
+        values.add(1);
+        values.add("two");
+        Assert.assertEquals(written, mapper.writeValueAsString(mapper.readValue(unknown, type)));
+    }
+
+    @Test
+    public void testXmlConverters() throws Exception {
+        final ClassLoader classLoader = generateXmlConverters();
+        final Class<?> type = classLoader.loadClass(PACKAGE_NAME + ".Merchandise__c");
+        final XStream xstream = createXStream(classLoader);
+        SourceCompiler.invoke(classLoader.loadClass(PACKAGE_NAME + ".SObjectXStreamSetup"), "configure", xstream);
+
+        final ObjectMapper beanMapper = new ObjectMapper();
+        final Object merchandise = beanMapper.readValue(MERCHANDISE_RECORD, type);
+        final JsonNode expected = beanMapper.valueToTree(merchandise);
+
+        final String xml = xstream.toXML(merchandise);
+        Assert.assertTrue(xml, xml.startsWith("<Merchandise__c>"));
+        Assert.assertTrue(xml, xml.contains("<Category__c>Home &amp; Garden</Category__c>"));
+        Assert.assertEquals(expected, beanMapper.valueToTree(xstream.fromXML(xml)));
+
+        // unknown elements are skipped
+        final String unknown = xml.replace("<Name>", "<Unknown__c><Nested>1</Nested></Unknown__c><Name>");
+        Assert.assertEquals(expected, beanMapper.valueToTree(xstream.fromXML(unknown)));
+    }
+
+    @Test
+    public void testXmlConvertersMatchReflection() throws Exception {
+        final ClassLoader classLoader = generateXmlConverters();
+        final Class<?> type = classLoader.loadClass(PACKAGE_NAME + ".Merchandise__c");
+        final XStream xstream = createXStream(classLoader);
+        SourceCompiler.invoke(classLoader.loadClass(PACKAGE_NAME + ".SObjectXStreamSetup"), "configure", xstream);
+        final XStream reflective = createXStream(classLoader);
+        reflective.processAnnotations(type);
+
+        final ObjectMapper beanMapper = new ObjectMapper();
+        final Object merchandise = beanMapper.readValue(MERCHANDISE_RECORD, type);
+        final JsonNode expected = beanMapper.valueToTree(merchandise);
+
+        // XStream 1.4.4 reflection fails on Java 8 and later
+        final String reflectiveXml;
+        try {
+            reflectiveXml = reflective.toXML(merchandise);
+        } catch (ArrayIndexOutOfBoundsException e) {
+            Assume.assumeNoException(e);
+            return;
+        }
+
+        // generated converters read and write the same XML as XStream reflection
+        Assert.assertEquals(expected, beanMapper.valueToTree(xstream.fromXML(reflectiveXml)));
+        Assert.assertEquals(expected, beanMapper.valueToTree(reflective.fromXML(xstream.toXML(merchandise))));
+    }
+
+    private ClassLoader generateXmlConverters() throws Exception {
+        final File outputDirectory = new File("target/generated-sources/camel-salesforce-xml");
+        deleteDirectory(outputDirectory);
+
+        final CamelSalesforceMojo mojo = createMojo(outputDirectory);
+        mojo.xmlConverters = true;
+        mojo.execute();
+
+        return SourceCompiler.compile(outputDirectory);
+    }
+
+    // XStream configured like the Salesforce component's XML processor
+    static XStream createXStream(ClassLoader classLoader) {
+        final XStream xstream = new XStream(new XppDriver(new NoNameCoder()));
+        xstream.setClassLoader(classLoader);
+        xstream.registerConverter(new JodaTimeConverter());
+        return xstream;
+    }
+
+    @Test
+    public void testLenientPicklists() throws Exception {
+        final File outputDirectory = new File("target/generated-sources/camel-salesforce-lenient");
+        deleteDirectory(outputDirectory);
+
+        final CamelSalesforceMojo mojo = createMojo(outputDirectory);
+        mojo.lenientPicklists = "all";
+        mojo.jsonSerializers = true;
+        mojo.xmlConverters = true;
+        mojo.execute();
+
+        final ClassLoader classLoader = SourceCompiler.compile(outputDirectory);
+        final Class<?> type = classLoader.loadClass(PACKAGE_NAME + ".Merchandise__c");
+        final Class<?> picklistType = classLoader.loadClass(PACKAGE_NAME + ".CategoryEnum");
+        Assert.assertFalse("CategoryEnum is not an open class", picklistType.isEnum());
+        Assert.assertNull(SourceCompiler.invoke(picklistType, "fromValue", new Object[] { null }));
+        final Object known = SourceCompiler.invoke(picklistType, "fromValue", "Home & Garden");
+        Assert.assertEquals(Boolean.TRUE, SourceCompiler.invoke(known, "isKnown"));
+        Assert.assertSame(known, SourceCompiler.invoke(picklistType, "fromValue", "Home & Garden"));
+
+        // a value added to the picklist after generation
+        final ObjectMapper beanMapper = new ObjectMapper();
+        final ObjectNode record = (ObjectNode) beanMapper.readTree(MERCHANDISE_RECORD);
+        record.put("Category__c", "Toys");
+
+        final Object merchandise = beanMapper.readValue(record, type);
+        assertUnknownCategory(merchandise);
+        Assert.assertEquals("Toys", beanMapper.valueToTree(merchandise).get("Category__c").getTextValue());
+
+        final ObjectMapper mapper = new ObjectMapper();
+        mapper.registerModule((Module) classLoader.loadClass(PACKAGE_NAME + ".SObjectJsonModule").newInstance());
+        final Object read = mapper.readValue(record, type);
+        assertUnknownCategory(read);
+        final JsonNode written = beanMapper.readTree(mapper.writeValueAsString(read));
+        Assert.assertEquals("Toys", written.get("Category__c").getTextValue());
+
+        final XStream xstream = createXStream(classLoader);
+        SourceCompiler.invoke(classLoader.loadClass(PACKAGE_NAME + ".SObjectXStreamSetup"), "configure", xstream);
+        final String xml = xstream.toXML(merchandise);
+        Assert.assertTrue(xml, xml.contains("<Category__c>Toys</Category__c>"));
+        assertUnknownCategory(xstream.fromXML(xml));
+    }
+
+    private static void assertUnknownCategory(Object merchandise) throws Exception {
+        final Object category = SourceCompiler.invoke(merchandise, "getCategory__c");
+        Assert.assertEquals("Toys", SourceCompiler.invoke(category, "value"));
+        Assert.assertEquals(Boolean.FALSE, SourceCompiler.invoke(category, "isKnown"));
+    }
+
+    @Test
+    public void testDirtyTracking() throws Exception {
+        final File outputDirectory = new File("target/generated-sources/camel-salesforce-dirty");
+        deleteDirectory(outputDirectory);
+
+        final CamelSalesforceMojo mojo = createMojo(outputDirectory);
+        mojo.dirtyTracking = true;
+        mojo.jsonSerializers = true;
+        mojo.execute();
+
+        final ClassLoader classLoader = SourceCompiler.compile(outputDirectory);
+        final Class<?> type = classLoader.loadClass(PACKAGE_NAME + ".Merchandise__c");
+        final Class<?> moduleType = classLoader.loadClass(PACKAGE_NAME + ".SObjectJsonModule");
+
+        // setters mark fields dirty, including updateable base fields
+        final Object created = type.newInstance();
+        Assert.assertEquals(Boolean.FALSE, SourceCompiler.invoke(created, "isDirty", "Name"));
+        SourceCompiler.invoke(created, "setName", "Widget");
+        SourceCompiler.invoke(created, "setPrice__c", 9.99);
+        Assert.assertEquals(Boolean.TRUE, SourceCompiler.invoke(created, "isDirty", "Name"));
+        Assert.assertEquals(Boolean.TRUE, SourceCompiler.invoke(created, "isDirty", "Price__c"));
+        Assert.assertEquals(Boolean.FALSE, SourceCompiler.invoke(created, "isDirty", "Description__c"));
+        Assert.assertEquals(Boolean.FALSE, SourceCompiler.invoke(created, "isDirty", "Unknown__c"));
+        SourceCompiler.invoke(created, "clearDirty");
+        Assert.assertEquals(Boolean.FALSE, SourceCompiler.invoke(created, "isDirty", "Name"));
+        Assert.assertEquals(Boolean.FALSE, SourceCompiler.invoke(created, "isDirty", "Price__c"));
+
+        // generated deserializers clear dirty bits after reading a record
+        final ObjectMapper mapper = new ObjectMapper();
+        mapper.registerModule((Module) moduleType.newInstance());
+        final Object merchandise = SourceCompiler.invoke(moduleType, "readValue", mapper,
+            DescriptionFetcher.readFully(new FileInputStream(MERCHANDISE_RECORD)), type);
+        Assert.assertEquals(Boolean.FALSE, SourceCompiler.invoke(merchandise, "isDirty", "Name"));
+        Assert.assertEquals(Boolean.FALSE, SourceCompiler.invoke(merchandise, "isDirty", "Price__c"));
+
+        // updates only write modified fields, with explicit nulls for cleared fields
+        final ObjectMapper updateMapper = new ObjectMapper();
+        updateMapper.registerModule((Module) SourceCompiler.invoke(moduleType, "dirtyFieldsModule"));
+        Assert.assertEquals("{}", updateMapper.writeValueAsString(merchandise));
+        SourceCompiler.invoke(merchandise, "setName", "Gadget");
+        SourceCompiler.invoke(merchandise, "setDescription__c", new Object[] { null });
+        final JsonNode update = updateMapper.readTree(updateMapper.writeValueAsString(merchandise));
+        Assert.assertEquals(2, update.size());
+        Assert.assertEquals("Gadget", update.get("Name").getTextValue());
+        Assert.assertTrue(update.get("Description__c").isNull());
+    }
+
+    static String readFile(File file) throws IOException {
+        final Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+        try {
+            final StringBuilder content = new StringBuilder();
+            final char[] buffer = new char[4096];
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                content.append(buffer, 0, read);
+            }
+            return content.toString();
+        } finally {
+            reader.close();
+        }
+    }
+
+    static CamelSalesforceMojo createMojo(File outputDirectory) {
+        final CamelSalesforceMojo mojo = MojoDefaults.apply(new CamelSalesforceMojo());
+        mojo.setLog(new SystemStreamLog());
+
+        // the test snapshot was fetched with API version 27.0
+        mojo.version = "27.0";
+        mojo.outputDirectory = outputDirectory;
+
+        // generate from the test snapshot, without login properties
+        mojo.snapshot = new File("src/test/resources/snapshot");
+        mojo.includePattern = "(.*__c)|(PushTopic)";
+        return mojo;
+    }
+
+    static void deleteDirectory(File directory) {
+        final File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.isDirectory()) {
+                    deleteDirectory(file);
+                } else {
+                    file.delete();
+                }
+            }
+        }
+        directory.delete();
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.camel.maven;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+
+public class DescriptionCacheTest {
+
+    private static final String OBJECT_NAME = "Merchandise__c";
+    private static final String LAST_MODIFIED = "Tue, 01 Jan 2013 00:00:00 GMT";
+
+    private File cacheDirectory;
+    private byte[] content;
+
+    @Before
+    public void setUp() throws Exception {
+        cacheDirectory = new File("target/describe-cache-test");
+        CamelSalesforceMojoSnapshotTest.deleteDirectory(cacheDirectory);
+        content = DescriptionFetcher.readFully(
+            new FileInputStream("src/test/resources/snapshot/sobjects/" + OBJECT_NAME + ".json"));
+    }
+
+    @Test
+    public void testCommitParsedResponse() throws Exception {
+        final DescriptionCache cache = createCache();
+        final DescriptionParser parser = new DescriptionParser(new ObjectMapper());
+
+        // the parser stops at the closing brace, trailing whitespace is still unread
+        final byte[] response = Arrays.copyOf(content, content.length + 2);
+        response[content.length] = '\n';
+        response[content.length + 1] = '\n';
+        final InputStream in = cache.store(OBJECT_NAME, new ByteArrayInputStream(response), LAST_MODIFIED);
+        try {
+            Assert.assertEquals(OBJECT_NAME, parser.parse(in).getName());
+        } finally {
+            in.close();
+        }
+
+        final DescriptionCache.Entry entry = cache.get(OBJECT_NAME);
+        Assert.assertNotNull("Parsed response was not committed to the cache", entry);
+        Assert.assertEquals(LAST_MODIFIED, entry.getLastModified());
+        Assert.assertArrayEquals(response, DescriptionFetcher.readFully(entry.openStream()));
+        Assert.assertEquals(response.length, parser.getBytesParsed());
+    }
+
+    @Test
+    public void testDiscardIncompleteResponse() throws Exception {
+        final DescriptionCache cache = createCache();
+
+        final InputStream in = cache.store(OBJECT_NAME, new ByteArrayInputStream(content), LAST_MODIFIED);
+        try {
+            Assert.assertTrue(in.read(new byte[100]) > 0);
+        } finally {
+            in.close();
+        }
+
+        Assert.assertNull("Incomplete response was committed to the cache", cache.get(OBJECT_NAME));
+        Assert.assertEquals("Temporary file was not deleted", 0, cache.getDirectory().list().length);
+    }
+
+    private DescriptionCache createCache() {
+        return new DescriptionCache(cacheDirectory, "00D000000000001", "27.0", 60000L, 1024 * 1024L,
+            new SystemStreamLog());
+    }
+}
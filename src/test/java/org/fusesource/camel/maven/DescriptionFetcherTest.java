@@ -0,0 +1,308 @@
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.camel.maven;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.node.ArrayNode;
+import org.codehaus.jackson.node.ObjectNode;
+import org.eclipse.jetty.client.HttpClient;
+import org.fusesource.camel.component.salesforce.internal.SalesforceSession;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class DescriptionFetcherTest {
+
+    private static final List<String> OBJECT_NAMES = Arrays.asList(
+        "Object1__c", "Object2__c", "Object3__c", "Object4__c", "Object5__c", "Object6__c");
+    private static final List<String> BATCH_OBJECT_NAMES = Arrays.asList("Merchandise__c", "PushTopic");
+
+    private MockSalesforceServer server;
+    private HttpClient httpClient;
+    private SalesforceSession session;
+    private MetadataRestClient metadataClient;
+    private ObjectMapper mapper;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockSalesforceServer();
+        httpClient = MockSalesforceServer.startHttpClient();
+        session = new SalesforceSession(httpClient, server.getLoginConfig());
+        session.login(null);
+        metadataClient = new MetadataRestClient(httpClient, session, MockSalesforceServer.VERSION, 5000);
+        mapper = new ObjectMapper();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        httpClient.stop();
+        server.stop();
+    }
+
+    @Test
+    public void testFetchConcurrently() throws Exception {
+        final byte[] description = MockSalesforceServer.readDescription("Merchandise__c");
+        for (String name : OBJECT_NAMES) {
+            server.respond("GET", "/sobjects/" + name + "/describe/", 200, description);
+        }
+
+        final DescriptionFetcher fetcher = new DescriptionFetcher(metadataClient, mapper, 4, new SystemStreamLog());
+        final Map<String, String> parsed = fetch(fetcher, OBJECT_NAMES);
+        Assert.assertEquals(OBJECT_NAMES.size(), parsed.size());
+        for (String name : OBJECT_NAMES) {
+            Assert.assertEquals("Merchandise__c", parsed.get(name));
+            Assert.assertEquals(1, server.getRequestCount("GET", "/sobjects/" + name + "/describe/"));
+        }
+    }
+
+    @Test
+    public void testFailOnFirstError() throws Exception {
+        final byte[] description = MockSalesforceServer.readDescription("Merchandise__c");
+        for (String name : OBJECT_NAMES) {
+            if (!"Object3__c".equals(name)) {
+                server.respond("GET", "/sobjects/" + name + "/describe/", 200, description);
+            }
+        }
+        server.respond("GET", "/sobjects/Object3__c/describe/", 500,
+            "[{\"errorCode\":\"UNKNOWN_EXCEPTION\",\"message\":\"Server error\"}]".getBytes("UTF-8"));
+
+        final DescriptionFetcher fetcher = new DescriptionFetcher(metadataClient, mapper, 4, new SystemStreamLog());
+        try {
+            fetch(fetcher, OBJECT_NAMES);
+            Assert.fail("Fetch should fail on a server error");
+        } catch (MojoExecutionException expected) {
+            Assert.assertTrue(expected.getMessage(), expected.getMessage().contains("Object3__c"));
+            Assert.assertTrue(expected.getMessage(), expected.getMessage().contains("UNKNOWN_EXCEPTION"));
+        }
+    }
+
+    @Test
+    public void testRevalidateCachedDescriptions() throws Exception {
+        final File cacheDirectory = new File("target/describe-fetcher-test");
+        CamelSalesforceMojoSnapshotTest.deleteDirectory(cacheDirectory);
+        final DescriptionCache cache = new DescriptionCache(cacheDirectory, metadataClient.getOrgId(),
+            MockSalesforceServer.VERSION, 60000L, 1024 * 1024L, new SystemStreamLog());
+        final DescriptionFetcher fetcher = new DescriptionFetcher(metadataClient, mapper, 1, new SystemStreamLog());
+        fetcher.setCache(cache);
+        final List<String> names = Arrays.asList("Merchandise__c");
+        final String path = "/sobjects/Merchandise__c/describe/";
+
+        // the first response is cached with its Last-Modified date
+        server.respondDescription("Merchandise__c", "Last-Modified", MockSalesforceServer.LAST_MODIFIED);
+        Assert.assertEquals("Merchandise__c", fetch(fetcher, names).get("Merchandise__c"));
+        Assert.assertEquals(MockSalesforceServer.LAST_MODIFIED, cache.get("Merchandise__c").getLastModified());
+
+        // an unchanged description is revalidated, and read from the cache
+        server.respond("GET", path, 304, null);
+        Assert.assertEquals("Merchandise__c", fetch(fetcher, names).get("Merchandise__c"));
+        List<MockSalesforceServer.RecordedRequest> requests = server.getRequests();
+        Assert.assertEquals(2, requests.size());
+        Assert.assertNull(requests.get(0).getIfModifiedSince());
+        Assert.assertEquals(MockSalesforceServer.LAST_MODIFIED, requests.get(1).getIfModifiedSince());
+
+        // a changed description replaces the cached one
+        final String lastModified = "Wed, 02 Jan 2013 00:00:00 GMT";
+        server.respond("GET", path, 200, MockSalesforceServer.readDescription("PushTopic"),
+            "Last-Modified", lastModified);
+        Assert.assertEquals("PushTopic", fetch(fetcher, names).get("Merchandise__c"));
+        requests = server.getRequests();
+        Assert.assertEquals(MockSalesforceServer.LAST_MODIFIED, requests.get(2).getIfModifiedSince());
+        Assert.assertEquals(lastModified, cache.get("Merchandise__c").getLastModified());
+        Assert.assertArrayEquals(MockSalesforceServer.readDescription("PushTopic"),
+            DescriptionFetcher.readFully(cache.get("Merchandise__c").openStream()));
+    }
+
+    @Test
+    public void testBatchDescribe() throws Exception {
+        server.respond("POST", "/composite/batch", 200, createBatchResponse(BATCH_OBJECT_NAMES));
+
+        final Map<String, String> parsed = fetch(createBatchFetcher(), BATCH_OBJECT_NAMES);
+        Assert.assertEquals("Merchandise__c", parsed.get("Merchandise__c"));
+        Assert.assertEquals("PushTopic", parsed.get("PushTopic"));
+
+        // one Composite Batch request with a describe subrequest per SObject
+        final List<MockSalesforceServer.RecordedRequest> requests = server.getRequests();
+        Assert.assertEquals(1, requests.size());
+        final JsonNode batchRequests = mapper.readTree(requests.get(0).getBody()).get("batchRequests");
+        Assert.assertEquals(2, batchRequests.size());
+        Assert.assertEquals("v34.0/sobjects/Merchandise__c/describe", batchRequests.get(0).get("url").getTextValue());
+    }
+
+    @Test
+    public void testBatchCachedDescriptions() throws Exception {
+        final File cacheDirectory = new File("target/describe-fetcher-test");
+        CamelSalesforceMojoSnapshotTest.deleteDirectory(cacheDirectory);
+        final byte[] merchandise = MockSalesforceServer.readDescription("Merchandise__c");
+        createCache(cacheDirectory).put("Merchandise__c", merchandise, MockSalesforceServer.LAST_MODIFIED);
+        createCache(cacheDirectory).put("PushTopic", merchandise, MockSalesforceServer.LAST_MODIFIED);
+        server.respond("POST", "/composite/batch", 200, createBatchResponse(BATCH_OBJECT_NAMES));
+
+        // cached descriptions stay in the batch, no conditional describe requests are made
+        final BatchDescriptionFetcher fetcher = createBatchFetcher();
+        final DescriptionCache cache = createCache(cacheDirectory);
+        fetcher.setCache(cache);
+        Assert.assertEquals(1, fetcher.getPlannedRequests(BATCH_OBJECT_NAMES));
+        final Map<String, String> parsed = fetch(fetcher, BATCH_OBJECT_NAMES);
+        Assert.assertEquals("Merchandise__c", parsed.get("Merchandise__c"));
+        Assert.assertEquals("PushTopic", parsed.get("PushTopic"));
+        Assert.assertEquals(1, server.getRequests().size());
+
+        // only the changed description replaces its cache entry
+        Assert.assertEquals("1 descriptions unchanged, 1 downloaded", cache.getStatistics());
+        Assert.assertArrayEquals(merchandise, DescriptionFetcher.readFully(cache.get("Merchandise__c").openStream()));
+        Assert.assertEquals("PushTopic", fetcher.getParser().parse(cache.get("PushTopic").openStream()).getName());
+    }
+
+    @Test
+    public void testBatchLastModified() throws Exception {
+        final File cacheDirectory = new File("target/describe-fetcher-test");
+        CamelSalesforceMojoSnapshotTest.deleteDirectory(cacheDirectory);
+        final ObjectNode response = (ObjectNode) mapper.readTree(createBatchResponse(BATCH_OBJECT_NAMES));
+        ((ObjectNode) response.get("results").get(0)).putObject("httpHeaders")
+            .put("Last-Modified", MockSalesforceServer.LAST_MODIFIED);
+        server.respond("POST", "/composite/batch", 200, mapper.writeValueAsBytes(response));
+
+        // batch results are cached with their Last-Modified date, if they have one
+        final BatchDescriptionFetcher batchFetcher = createBatchFetcher();
+        batchFetcher.setCache(createCache(cacheDirectory));
+        fetch(batchFetcher, BATCH_OBJECT_NAMES);
+        final DescriptionCache cache = createCache(cacheDirectory);
+        Assert.assertEquals(MockSalesforceServer.LAST_MODIFIED, cache.get("Merchandise__c").getLastModified());
+        Assert.assertNull(cache.get("PushTopic").getLastModified());
+
+        // entries without a Last-Modified date are requested unconditionally
+        for (String name : BATCH_OBJECT_NAMES) {
+            server.respondDescription(name);
+        }
+        final DescriptionFetcher fetcher = new DescriptionFetcher(metadataClient, mapper, 1, new SystemStreamLog());
+        fetcher.setCache(cache);
+        fetch(fetcher, BATCH_OBJECT_NAMES);
+        final List<MockSalesforceServer.RecordedRequest> requests = server.getRequests();
+        Assert.assertEquals(3, requests.size());
+        Assert.assertEquals(MockSalesforceServer.LAST_MODIFIED, requests.get(1).getIfModifiedSince());
+        Assert.assertNull(requests.get(2).getIfModifiedSince());
+    }
+
+    @Test
+    public void testBatchNotSupported() throws Exception {
+        // no Composite Batch resource, the server answers 404
+        for (String name : BATCH_OBJECT_NAMES) {
+            server.respondDescription(name);
+        }
+
+        final Map<String, String> parsed = fetch(createBatchFetcher(), BATCH_OBJECT_NAMES);
+        Assert.assertEquals("Merchandise__c", parsed.get("Merchandise__c"));
+        Assert.assertEquals("PushTopic", parsed.get("PushTopic"));
+        Assert.assertEquals(1, server.getRequestCount("POST", "/composite/batch"));
+        for (String name : BATCH_OBJECT_NAMES) {
+            Assert.assertEquals(1, server.getRequestCount("GET", "/sobjects/" + name + "/describe/"));
+        }
+    }
+
+    @Test
+    public void testSkipUnknownObjects() throws Exception {
+        final List<String> names = Arrays.asList("Merchandise__c", "Unknown__c");
+        server.respondDescription("Merchandise__c");
+
+        // unknown names fail the fetch, unless they are skipped
+        final DescriptionFetcher fetcher = new DescriptionFetcher(metadataClient, mapper, 1, new SystemStreamLog());
+        try {
+            fetch(fetcher, names);
+            Assert.fail("Fetch should fail for an unknown SObject");
+        } catch (MojoExecutionException expected) {
+            Assert.assertTrue(expected.getMessage(), expected.getMessage().contains("Unknown__c"));
+        }
+
+        server.respondDescription("Merchandise__c");
+        fetcher.setSkipNotFound(true);
+        Assert.assertEquals(Collections.singletonMap("Merchandise__c", "Merchandise__c"), fetch(fetcher, names));
+
+        // also with the describe cache
+        final File cacheDirectory = new File("target/describe-fetcher-test");
+        CamelSalesforceMojoSnapshotTest.deleteDirectory(cacheDirectory);
+        fetcher.setCache(new DescriptionCache(cacheDirectory, metadataClient.getOrgId(),
+            MockSalesforceServer.VERSION, 60000L, 1024 * 1024L, new SystemStreamLog()));
+        server.respondDescription("Merchandise__c");
+        Assert.assertEquals(Collections.singletonMap("Merchandise__c", "Merchandise__c"), fetch(fetcher, names));
+        Assert.assertNull(fetcher.getCache().get("Unknown__c"));
+    }
+
+    @Test
+    public void testSkipUnknownObjectsInBatch() throws Exception {
+        final ObjectNode response = mapper.createObjectNode();
+        final ArrayNode results = response.putArray("results");
+        final ObjectNode found = results.addObject();
+        found.put("statusCode", 200);
+        found.put("result", mapper.readTree(MockSalesforceServer.readDescription("Merchandise__c")));
+        final ObjectNode notFound = results.addObject();
+        notFound.put("statusCode", 404);
+        notFound.putArray("result").addObject().put("errorCode", "NOT_FOUND");
+        server.respond("POST", "/composite/batch", 200, mapper.writeValueAsBytes(response));
+
+        final BatchDescriptionFetcher fetcher = createBatchFetcher();
+        fetcher.setSkipNotFound(true);
+        Assert.assertEquals(Collections.singletonMap("Merchandise__c", "Merchandise__c"),
+            fetch(fetcher, Arrays.asList("Merchandise__c", "Unknown__c")));
+    }
+
+    private byte[] createBatchResponse(List<String> objectNames) throws Exception {
+        final ObjectNode response = mapper.createObjectNode();
+        final ArrayNode results = response.putArray("results");
+        for (String name : objectNames) {
+            final ObjectNode result = results.addObject();
+            result.put("statusCode", 200);
+            result.put("result", mapper.readTree(MockSalesforceServer.readDescription(name)));
+        }
+        return mapper.writeValueAsBytes(response);
+    }
+
+    private DescriptionCache createCache(File cacheDirectory) throws Exception {
+        return new DescriptionCache(cacheDirectory, metadataClient.getOrgId(), MockSalesforceServer.VERSION,
+            60000L, 1024 * 1024L, new SystemStreamLog());
+    }
+
+    private BatchDescriptionFetcher createBatchFetcher() {
+        // Composite Batch requires API version 34.0
+        final MetadataRestClient batchClient = new MetadataRestClient(httpClient, session, "34.0", 5000);
+        return new BatchDescriptionFetcher(batchClient, mapper, 4, new SystemStreamLog());
+    }
+
+    // fetches and parses descriptions, returns parsed SObject names by requested name
+    private Map<String, String> fetch(DescriptionFetcher fetcher, List<String> objectNames)
+        throws MojoExecutionException {
+        final Map<String, String> parsed = new ConcurrentHashMap<String, String>();
+        final DescriptionParser parser = fetcher.getParser();
+        fetcher.fetch(objectNames, new DescriptionFetcher.ResponseHandler() {
+            public void handle(String objectName, InputStream content) throws Exception {
+                parsed.put(objectName, parser.parse(content).getName());
+            }
+        });
+        return parsed;
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.camel.maven;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.fusesource.camel.component.salesforce.api.dto.SObjectDescription;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+public class DescriptionPipelineTest {
+
+    private static final List<String> OBJECT_NAMES = Arrays.asList(
+        "Object1__c", "Object2__c", "Object3__c", "Object4__c", "Object5__c");
+
+    @Test(timeout = 10000)
+    public void testConsumeAll() throws Exception {
+        final Set<String> consumed = new ConcurrentSkipListSet<String>();
+        final int count = new DescriptionPipeline(2, 3).run(new NamesProducer(), new DescriptionPipeline.Consumer() {
+            public void consume(SObjectDescription description) {
+                consumed.add(description.getName());
+            }
+        });
+        Assert.assertEquals(OBJECT_NAMES.size(), count);
+        Assert.assertEquals(OBJECT_NAMES, Arrays.asList(consumed.toArray()));
+    }
+
+    @Test(timeout = 10000)
+    public void testAggregateConsumerErrors() throws Exception {
+        final Set<String> consumed = new ConcurrentSkipListSet<String>();
+        try {
+            new DescriptionPipeline(2, 3).run(new NamesProducer(), new DescriptionPipeline.Consumer() {
+                public void consume(SObjectDescription description) throws MojoExecutionException {
+                    consumed.add(description.getName());
+                    if ("Object2__c".equals(description.getName()) || "Object4__c".equals(description.getName())) {
+                        throw new MojoExecutionException("Error generating " + description.getName());
+                    }
+                }
+            });
+            Assert.fail("Pipeline should fail after consumer errors");
+        } catch (MojoExecutionException expected) {
+            final String message = expected.getMessage();
+            Assert.assertTrue(message, message.startsWith("2 errors generating Java Classes:"));
+            Assert.assertTrue(message, message.contains("Error generating Object2__c"));
+            Assert.assertTrue(message, message.contains("Error generating Object4__c"));
+        }
+        // consumer errors do not stop the pipeline
+        Assert.assertEquals(OBJECT_NAMES, Arrays.asList(consumed.toArray()));
+    }
+
+    @Test(timeout = 10000)
+    public void testRethrowSingleConsumerError() throws Exception {
+        final MojoExecutionException error = new MojoExecutionException("Error generating Object3__c");
+        try {
+            new DescriptionPipeline(2).run(new NamesProducer(), new DescriptionPipeline.Consumer() {
+                public void consume(SObjectDescription description) throws MojoExecutionException {
+                    if ("Object3__c".equals(description.getName())) {
+                        throw error;
+                    }
+                }
+            });
+            Assert.fail("Pipeline should fail after a consumer error");
+        } catch (MojoExecutionException expected) {
+            Assert.assertSame(error, expected);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testProducerError() throws Exception {
+        try {
+            new DescriptionPipeline(1, 2).run(new DescriptionPipeline.Producer() {
+                public void produce(DescriptionPipeline.Sink sink) throws Exception {
+                    sink.put(createDescription("Object1__c"));
+                    throw new MojoExecutionException("Error getting SObject description for Object2__c");
+                }
+            }, new DescriptionPipeline.Consumer() {
+                public void consume(SObjectDescription description) {
+                    // ignore
+                }
+            });
+            Assert.fail("Pipeline should fail after a producer error");
+        } catch (MojoExecutionException expected) {
+            Assert.assertEquals("Error getting SObject description for Object2__c", expected.getMessage());
+        }
+    }
+
+    private static SObjectDescription createDescription(String name) {
+        final SObjectDescription description = new SObjectDescription();
+        description.setName(name);
+        return description;
+    }
+
+    private static class NamesProducer implements DescriptionPipeline.Producer {
+
+        public void produce(DescriptionPipeline.Sink sink) throws Exception {
+            for (String name : OBJECT_NAMES) {
+                sink.put(createDescription(name));
+            }
+        }
+    }
+}
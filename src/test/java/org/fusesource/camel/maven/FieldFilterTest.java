@@ -0,0 +1,110 @@
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.camel.maven;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.fusesource.camel.component.salesforce.api.dto.SObjectDescription;
+import org.fusesource.camel.component.salesforce.api.dto.SObjectField;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class FieldFilterTest {
+
+    private static final List<String> BASE_FIELDS = Arrays.asList("Id", "OwnerId", "IsDeleted", "Name",
+        "CreatedDate", "CreatedById", "LastModifiedDate", "LastModifiedById", "SystemModstamp", "LastActivityDate");
+
+    private final CamelSalesforceMojo.GeneratorUtility utility = new CamelSalesforceMojo.GeneratorUtility();
+
+    @Test
+    public void testIncludes() throws Exception {
+        final List<String> warnings = new ArrayList<String>();
+        final FieldFilter filter = new FieldFilter(
+            Collections.singletonMap("Merchandise__c", "Category__c, Price__c,Missing__c"), null, null,
+            new SystemStreamLog() {
+                @Override
+                public void warn(CharSequence content) {
+                    warnings.add(content.toString());
+                }
+            });
+        Assert.assertFalse(filter.isEmpty());
+
+        // base fields are always kept, and fields stay in description order
+        Assert.assertEquals(concat(BASE_FIELDS, "Price__c", "Category__c"), filter(filter, "Merchandise__c"));
+        Assert.assertEquals(Arrays.asList("Included field Missing__c not found in SObject Merchandise__c"), warnings);
+    }
+
+    @Test
+    public void testExcludesAndAttributes() throws Exception {
+        final FieldFilter excluding = new FieldFilter(null,
+            Collections.singletonMap("Merchandise__c", "Margin__c,Id"), null, new SystemStreamLog());
+        Assert.assertEquals(concat(BASE_FIELDS, "Description__c", "Price__c", "Total_Inventory__c", "Category__c"),
+            filter(excluding, "Merchandise__c"));
+
+        // lists only apply to their SObject
+        final FieldFilter other = new FieldFilter(Collections.singletonMap("Invoice__c", "Status__c"),
+            Collections.singletonMap("Invoice__c", "Description__c"), null, new SystemStreamLog());
+        Assert.assertEquals(15, filter(other, "Merchandise__c").size());
+
+        // attributes apply to all SObjects, Margin__c is a formula field
+        final FieldFilter attributes = new FieldFilter(null, null,
+            Collections.singletonMap("calculated", "false"), new SystemStreamLog());
+        Assert.assertEquals(filter(excluding, "Merchandise__c"), filter(attributes, "Merchandise__c"));
+
+        Assert.assertTrue(new FieldFilter(null, null, null, new SystemStreamLog()).isEmpty());
+    }
+
+    @Test
+    public void testInvalidConfiguration() throws Exception {
+        try {
+            new FieldFilter(null, Collections.singletonMap("Merchandise__c", "Margin__c,,Price__c"), null,
+                new SystemStreamLog());
+            Assert.fail("Empty field name should be rejected");
+        } catch (MojoExecutionException expected) {
+            Assert.assertEquals("Invalid empty field name in fieldExcludes for Merchandise__c", expected.getMessage());
+        }
+        final Map<String, String> attributes = new HashMap<String, String>();
+        attributes.put("formula", "false");
+        try {
+            new FieldFilter(null, null, attributes, new SystemStreamLog());
+            Assert.fail("Unknown attribute should be rejected");
+        } catch (MojoExecutionException expected) {
+            Assert.assertEquals("Unknown SObjectField attribute formula", expected.getMessage());
+        }
+    }
+
+    private List<String> filter(FieldFilter filter, String objectName) throws Exception {
+        final SObjectDescription description = GeneratorUtilityTest.parse(objectName);
+        final List<String> names = new ArrayList<String>();
+        for (SObjectField field : filter.filter(description, utility)) {
+            names.add(field.getName());
+        }
+        return names;
+    }
+
+    private static List<String> concat(List<String> names, String... more) {
+        final List<String> result = new ArrayList<String>(names);
+        result.addAll(Arrays.asList(more));
+        return result;
+    }
+}
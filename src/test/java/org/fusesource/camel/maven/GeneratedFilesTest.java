@@ -0,0 +1,83 @@
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.camel.maven;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+
+public class GeneratedFilesTest {
+
+    private static final String MANIFEST = GeneratedFiles.getManifestName("default", "test");
+
+    @Test
+    public void testCountEachPathOnce() throws Exception {
+        final File outputDirectory = new File("target/generated-files-test");
+        CamelSalesforceMojoSnapshotTest.deleteDirectory(outputDirectory);
+        outputDirectory.mkdirs();
+
+        // a picklist enum shared by several SObjects is rendered once per SObject
+        GeneratedFiles generatedFiles = new GeneratedFiles(outputDirectory, outputDirectory, MANIFEST, true, true, null,
+            new SystemStreamLog());
+        generatedFiles.write(new File(outputDirectory, "CategoryEnum.java"), "enum CategoryEnum {}");
+        generatedFiles.write(new File(outputDirectory, "CategoryEnum.java"), "enum CategoryEnum {}");
+        generatedFiles.write(new File(outputDirectory, "Merchandise__c.java"), "class Merchandise__c {}");
+        generatedFiles.close(true);
+        Assert.assertEquals(2, generatedFiles.getWritten());
+        Assert.assertEquals(0, generatedFiles.getUnchanged());
+
+        generatedFiles = new GeneratedFiles(outputDirectory, outputDirectory, MANIFEST, true, true, null,
+            new SystemStreamLog());
+        generatedFiles.write(new File(outputDirectory, "CategoryEnum.java"), "enum CategoryEnum {}");
+        generatedFiles.write(new File(outputDirectory, "CategoryEnum.java"), "enum CategoryEnum {}");
+        generatedFiles.write(new File(outputDirectory, "Merchandise__c.java"), "class Merchandise__c { int i; }");
+        generatedFiles.close(true);
+        Assert.assertEquals(1, generatedFiles.getWritten());
+        Assert.assertEquals(1, generatedFiles.getUnchanged());
+        Assert.assertEquals("1 files written, 1 unchanged, 0 deleted", generatedFiles.getStatistics());
+    }
+
+    @Test
+    public void testCompareWithFileOnDisk() throws Exception {
+        final File outputDirectory = new File("target/generated-files-compare-test");
+        CamelSalesforceMojoSnapshotTest.deleteDirectory(outputDirectory);
+        outputDirectory.mkdirs();
+        final File file = new File(outputDirectory, "Merchandise__c.java");
+
+        GeneratedFiles generatedFiles = new GeneratedFiles(outputDirectory, outputDirectory, null, true, false,
+            "Mon Jan 07 2013", new SystemStreamLog());
+        Assert.assertTrue(generatedFiles.write(file, "// Generated on: Mon Jan 07 2013\nclass Merchandise__c {}"));
+        generatedFiles.close(true);
+
+        // only the generation date changed, no manifest is needed to compare
+        generatedFiles = new GeneratedFiles(outputDirectory, outputDirectory, null, true, false, "Tue Jan 08 2013",
+            new SystemStreamLog());
+        Assert.assertFalse(generatedFiles.write(file, "// Generated on: Tue Jan 08 2013\nclass Merchandise__c {}"));
+        Assert.assertTrue(CamelSalesforceMojoSnapshotTest.readFile(file).contains("Mon Jan 07 2013"));
+
+        // other changes are written
+        Assert.assertTrue(generatedFiles.write(file, "// Generated on: Tue Jan 08 2013\nclass Merchandise__c { }"));
+        Assert.assertTrue(generatedFiles.write(file, "// Created on: Tue Jan 08 2013\nclass Merchandise__c { }"));
+
+        // without writeIfChanged files are always written
+        generatedFiles = new GeneratedFiles(outputDirectory, outputDirectory, null, false, false, null,
+            new SystemStreamLog());
+        Assert.assertTrue(generatedFiles.write(file, CamelSalesforceMojoSnapshotTest.readFile(file)));
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.camel.maven;
+
+import org.codehaus.jackson.map.ObjectMapper;
+import org.fusesource.camel.component.salesforce.api.dto.SObjectDescription;
+import org.fusesource.camel.component.salesforce.api.dto.SObjectField;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class GeneratorUtilityTest {
+
+    private final CamelSalesforceMojo.GeneratorUtility utility = new CamelSalesforceMojo.GeneratorUtility();
+
+    @Test
+    public void testDescriptionHelpers() throws Exception {
+        // helpers kept for custom templates, which get the description as $desc and picklist fields as $field
+        final SObjectDescription merchandise = parse("Merchandise__c");
+        Assert.assertTrue(utility.hasPicklists(merchandise));
+        Assert.assertEquals("3D Printers", utility.getLastEntry(getField(merchandise, "Category__c")).getValue());
+
+        merchandise.setFields(new ArrayList<SObjectField>());
+        Assert.assertFalse(utility.hasPicklists(merchandise));
+    }
+
+    @Test
+    public void testCreateModel() throws Exception {
+        final SObjectModel model = utility.createModel(parse("Merchandise__c"));
+        Assert.assertEquals("Merchandise__c", model.getName());
+
+        // custom fields in metadata order, resolved once for all templates
+        Assert.assertEquals(Arrays.asList("Description__c", "Price__c", "Total_Inventory__c", "Category__c",
+            "Margin__c"), getNames(model.getFields()));
+        final FieldModel price = model.getFields().get(1);
+        Assert.assertEquals("Double", price.getJavaType());
+        Assert.assertEquals("getPrice__c", price.getGetterName());
+        Assert.assertFalse(price.isBlob());
+        Assert.assertFalse(price.isPicklist());
+
+        final FieldModel category = model.getFields().get(3);
+        Assert.assertEquals("CategoryEnum", category.getJavaType());
+        Assert.assertSame(model.getPicklists().get(0), category.getPicklist());
+        final PicklistModel picklist = category.getPicklist();
+        Assert.assertEquals("Category__c", picklist.getFieldName());
+        Assert.assertEquals("CategoryEnum", picklist.getTypeName());
+        Assert.assertEquals(Arrays.asList("CLOTHING", "HOME___GARDEN", "_3D_PRINTERS"),
+            getConstantNames(picklist));
+        Assert.assertEquals("Home & Garden", picklist.getConstants().get(1).getValue());
+
+        // base fields are inherited, only updateable ones are tracked
+        Assert.assertEquals(11, model.getBaseFields().size());
+        Assert.assertEquals(Arrays.asList("Name", "OwnerId"), getNames(model.getUpdateableBaseFields()));
+
+        try {
+            model.getFields().clear();
+            Assert.fail("Model should be immutable");
+        } catch (UnsupportedOperationException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testCreateSortedModel() throws Exception {
+        final SObjectModel model = new CamelSalesforceMojo.GeneratorUtility(true).createModel(parse("Merchandise__c"));
+        Assert.assertEquals(Arrays.asList("Category__c", "Description__c", "Margin__c", "Price__c",
+            "Total_Inventory__c"), getNames(model.getFields()));
+        Assert.assertEquals(Arrays.asList("_3D_PRINTERS", "CLOTHING", "HOME___GARDEN"),
+            getConstantNames(model.getPicklists().get(0)));
+    }
+
+    private static List<String> getNames(List<FieldModel> fields) {
+        final List<String> names = new ArrayList<String>();
+        for (FieldModel field : fields) {
+            names.add(field.getName());
+        }
+        return names;
+    }
+
+    private static List<String> getConstantNames(PicklistModel picklist) {
+        final List<String> names = new ArrayList<String>();
+        for (PicklistModel.Constant constant : picklist.getConstants()) {
+            names.add(constant.getName());
+        }
+        return names;
+    }
+
+    static SObjectDescription parse(String objectName) throws Exception {
+        return new DescriptionParser(new ObjectMapper()).parse(
+            new ByteArrayInputStream(MockSalesforceServer.readDescription(objectName)));
+    }
+
+    static SObjectField getField(SObjectDescription description, String name) {
+        for (SObjectField field : description.getFields()) {
+            if (field.getName().equals(name)) {
+                return field;
+            }
+        }
+        throw new IllegalArgumentException("No field " + name);
+    }
+}
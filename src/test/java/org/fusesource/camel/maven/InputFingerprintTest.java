@@ -0,0 +1,73 @@
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.camel.maven;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.security.DigestInputStream;
+
+public class InputFingerprintTest {
+
+    @Test
+    public void testMetadataRevision() throws Exception {
+        final MetadataRevision first = new MetadataRevision();
+        add(first, "Merchandise__c", "{\"name\":\"Merchandise__c\"}");
+        add(first, "Invoice__c", "{\"name\":\"Invoice__c\"}");
+
+        // descriptions are fetched concurrently, the revision does not depend on their order
+        final MetadataRevision second = new MetadataRevision();
+        add(second, "Invoice__c", "{\"name\":\"Invoice__c\"}");
+        add(second, "Merchandise__c", "{\"name\":\"Merchandise__c\"}");
+        Assert.assertEquals(first.getRevision(), second.getRevision());
+
+        // a changed description changes the revision
+        final MetadataRevision changed = new MetadataRevision();
+        add(changed, "Invoice__c", "{\"name\":\"Invoice__c\",\"label\":\"Invoice\"}");
+        add(changed, "Merchandise__c", "{\"name\":\"Merchandise__c\"}");
+        Assert.assertFalse(first.getRevision().equals(changed.getRevision()));
+    }
+
+    @Test
+    public void testSaveMetadataRevision() throws Exception {
+        final File directory = new File("target/input-fingerprint-test");
+        CamelSalesforceMojoSnapshotTest.deleteDirectory(directory);
+        Assert.assertTrue(directory.mkdirs());
+
+        final InputFingerprint fingerprint = new InputFingerprint(directory);
+        fingerprint.add("packageName", "org.fusesource.camel.salesforce.dto");
+        fingerprint.save("outputs", "metadata");
+
+        final InputFingerprint next = new InputFingerprint(directory);
+        next.add("packageName", "org.fusesource.camel.salesforce.dto");
+        Assert.assertTrue(next.isUpToDate(-1));
+        Assert.assertEquals("outputs", next.getOutputRevision());
+        Assert.assertEquals("metadata", next.getMetadataRevision());
+
+        // runs from a metadata snapshot have no metadata revision
+        next.save("outputs", null);
+        Assert.assertNull(new InputFingerprint(directory).getMetadataRevision());
+    }
+
+    private static void add(MetadataRevision revision, String objectName, String description) throws Exception {
+        final DigestInputStream content = revision.track(new ByteArrayInputStream(description.getBytes("UTF-8")));
+        DescriptionFetcher.readFully(content);
+        revision.add(objectName, content);
+    }
+}
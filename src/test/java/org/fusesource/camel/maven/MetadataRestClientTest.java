@@ -0,0 +1,241 @@
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.camel.maven;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.eclipse.jetty.client.HttpClient;
+import org.fusesource.camel.component.salesforce.api.SalesforceException;
+import org.fusesource.camel.component.salesforce.internal.SalesforceSession;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+public class MetadataRestClientTest {
+
+    private static final String DESCRIBE_PATH = "/sobjects/Merchandise__c/describe/";
+    private static final byte[] SERVER_ERROR =
+        "[{\"errorCode\":\"SERVER_UNAVAILABLE\",\"message\":\"Server unavailable\"}]".getBytes();
+    private static final byte[] LIMIT_ERROR =
+        "[{\"errorCode\":\"REQUEST_LIMIT_EXCEEDED\",\"message\":\"Too many requests\"}]".getBytes();
+
+    private MockSalesforceServer server;
+    private HttpClient httpClient;
+    private SalesforceSession session;
+    private ExecutorService executor;
+    private Future<byte[]> next;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockSalesforceServer();
+        httpClient = MockSalesforceServer.startHttpClient();
+        session = new SalesforceSession(httpClient, server.getLoginConfig());
+        session.login(null);
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+        httpClient.stop();
+        server.stop();
+    }
+
+    @Test
+    public void testRetryTransientErrors() throws Exception {
+        final MetadataRestClient client = createClient();
+        client.setRetryPolicy(new RetryPolicy(3, 10, 10000));
+        server.respond("GET", DESCRIBE_PATH, 503, SERVER_ERROR);
+        server.respond("GET", DESCRIBE_PATH, 429, LIMIT_ERROR);
+        server.respondDescription("Merchandise__c");
+
+        Assert.assertArrayEquals(MockSalesforceServer.readDescription("Merchandise__c"),
+            client.getDescription("Merchandise__c", null).getContent());
+        Assert.assertEquals(3, server.getRequestCount("GET", DESCRIBE_PATH));
+    }
+
+    @Test
+    public void testRetriesExhausted() throws Exception {
+        final MetadataRestClient client = createClient();
+        client.setRetryPolicy(new RetryPolicy(1, 10, 10000));
+        server.respond("GET", DESCRIBE_PATH, 500, SERVER_ERROR);
+        server.respond("GET", DESCRIBE_PATH, 500, SERVER_ERROR);
+        server.respondDescription("Merchandise__c");
+
+        try {
+            client.getDescription("Merchandise__c", null);
+            Assert.fail("Request should fail after one retry");
+        } catch (SalesforceException expected) {
+            Assert.assertEquals(500, expected.getStatusCode());
+            Assert.assertTrue(expected.getMessage(), expected.getMessage().contains("after 2 attempts"));
+        }
+        Assert.assertEquals(2, server.getRequestCount("GET", DESCRIBE_PATH));
+    }
+
+    @Test
+    public void testLoginsNotCountedAsRetries() throws Exception {
+        final MetadataRestClient client = createClient();
+        client.setRetryPolicy(new RetryPolicy(1, 10, 10000));
+        server.expireSessions();
+        server.respond("GET", DESCRIBE_PATH, 503, SERVER_ERROR);
+        server.respondDescription("Merchandise__c");
+
+        // the request with the expired session and the login leave the only retry for the server error
+        Assert.assertArrayEquals(MockSalesforceServer.readDescription("Merchandise__c"),
+            client.getDescription("Merchandise__c", null).getContent());
+        Assert.assertEquals(3, server.getRequestCount("GET", DESCRIBE_PATH));
+        Assert.assertEquals(2, server.getLogins());
+    }
+
+    @Test(timeout = 10000)
+    public void testDeadlineCoversContent() throws Exception {
+        final MetadataRestClient client = createClient();
+        client.setRetryPolicy(new RetryPolicy(3, 10, 500));
+        server.respondSlowly("GET", DESCRIBE_PATH, MockSalesforceServer.readDescription("Merchandise__c"), 3000);
+
+        // the content stalls past the deadline, well within the read timeout
+        final long start = System.currentTimeMillis();
+        final InputStream content = client.getDescription("Merchandise__c", null).getContentStream();
+        try {
+            DescriptionFetcher.readFully(content);
+            Assert.fail("Reading content should fail at the deadline");
+        } catch (SocketTimeoutException expected) {
+            Assert.assertTrue(expected.getMessage(), expected.getMessage().startsWith("Deadline exceeded"));
+        }
+        Assert.assertTrue("Deadline exceeded", System.currentTimeMillis() - start < 2000);
+        // failures after a successful response are not retried
+        Assert.assertEquals(1, server.getRequestCount("GET", DESCRIBE_PATH));
+    }
+
+    @Test
+    public void testClientErrorsAndPostsNotRetried() throws Exception {
+        final MetadataRestClient client = createClient();
+        client.setRetryPolicy(new RetryPolicy(3, 10, 10000));
+        server.respond("GET", DESCRIBE_PATH, 400,
+            "[{\"errorCode\":\"MALFORMED_QUERY\",\"message\":\"Bad request\"}]".getBytes("UTF-8"));
+        server.respond("POST", "/composite/batch", 503, SERVER_ERROR);
+
+        try {
+            client.getDescription("Merchandise__c", null);
+            Assert.fail("Request should fail on a client error");
+        } catch (SalesforceException expected) {
+            Assert.assertEquals(400, expected.getStatusCode());
+        }
+        try {
+            client.batch("{\"batchRequests\":[]}".getBytes("UTF-8"));
+            Assert.fail("Composite Batch should fail on a server error");
+        } catch (SalesforceException expected) {
+            Assert.assertEquals(503, expected.getStatusCode());
+        }
+        Assert.assertEquals(1, server.getRequestCount("GET", DESCRIBE_PATH));
+        Assert.assertEquals(1, server.getRequestCount("POST", "/composite/batch"));
+    }
+
+    @Test
+    public void testDecompressResponses() throws Exception {
+        final byte[] description = MockSalesforceServer.readDescription("Merchandise__c");
+        final byte[] compressed = MockSalesforceServer.gzip(description);
+        server.respond("GET", DESCRIBE_PATH, 200, compressed, "Content-Encoding", "gzip");
+
+        final MetadataRestClient client = createClient();
+        Assert.assertArrayEquals(description, client.getDescription("Merchandise__c", null).getContent());
+        Assert.assertEquals("gzip", server.getRequests().get(0).getAcceptEncoding());
+        Assert.assertEquals(compressed.length, client.getBytesReceived());
+        Assert.assertEquals(description.length, client.getBytesDecoded());
+    }
+
+    @Test
+    public void testUncompressedResponses() throws Exception {
+        final byte[] description = MockSalesforceServer.readDescription("Merchandise__c");
+        server.respond("GET", DESCRIBE_PATH, 200, description);
+
+        final MetadataRestClient client = createClient();
+        client.setCompression(false);
+        Assert.assertArrayEquals(description, client.getDescription("Merchandise__c", null).getContent());
+        Assert.assertNull(server.getRequests().get(0).getAcceptEncoding());
+        Assert.assertEquals(description.length, client.getBytesReceived());
+        Assert.assertEquals(description.length, client.getBytesDecoded());
+    }
+
+    @Test(timeout = 10000)
+    public void testHoldThrottleSlotWhileStreaming() throws Exception {
+        final MetadataRestClient client = createClient();
+        client.setThrottle(new ApiLimitThrottle(null, 1, new SystemStreamLog()));
+
+        // closing unread content releases the slot
+        final InputStream content = assertSlotHeld(client);
+        content.close();
+        assertNextRequestCompletes();
+    }
+
+    @Test(timeout = 10000)
+    public void testReleaseThrottleSlotAtEnd() throws Exception {
+        final MetadataRestClient client = createClient();
+        client.setThrottle(new ApiLimitThrottle(null, 1, new SystemStreamLog()));
+
+        // reading content to its end releases the slot, before the stream is closed
+        final InputStream content = assertSlotHeld(client);
+        final byte[] buffer = new byte[8192];
+        while (content.read(buffer) != -1) {
+            // discard
+        }
+        assertNextRequestCompletes();
+
+        // closing the stream afterwards does not release the slot again
+        content.close();
+        assertSlotHeld(client).close();
+        assertNextRequestCompletes();
+    }
+
+    // opens a response, and checks that a concurrent request waits for its request slot
+    private InputStream assertSlotHeld(final MetadataRestClient client) throws Exception {
+        server.respondDescription("Merchandise__c");
+        server.respondDescription("Merchandise__c");
+        final int requests = server.getRequestCount("GET", DESCRIBE_PATH);
+        final InputStream content = client.getDescription("Merchandise__c", null).getContentStream();
+
+        next = executor.submit(new Callable<byte[]>() {
+            public byte[] call() throws Exception {
+                return client.getDescription("Merchandise__c", null).getContent();
+            }
+        });
+        try {
+            next.get(500, TimeUnit.MILLISECONDS);
+            Assert.fail("Request should wait while the only request slot is streaming");
+        } catch (TimeoutException expected) {
+            Assert.assertEquals(requests + 1, server.getRequestCount("GET", DESCRIBE_PATH));
+        }
+        return content;
+    }
+
+    private void assertNextRequestCompletes() throws Exception {
+        Assert.assertArrayEquals(MockSalesforceServer.readDescription("Merchandise__c"), next.get());
+    }
+
+    private MetadataRestClient createClient() {
+        return new MetadataRestClient(httpClient, session, MockSalesforceServer.VERSION, 5000);
+    }
+}
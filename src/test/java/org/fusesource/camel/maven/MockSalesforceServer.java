@@ -0,0 +1,306 @@
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.camel.maven;
+
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.eclipse.jetty.server.nio.SelectChannelConnector;
+import org.fusesource.camel.component.salesforce.SalesforceLoginConfig;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Local Jetty server standing in for Salesforce, so REST clients and fetchers can be tested offline.
+ * Answers OAuth password logins and token revocations, rejects REST requests with unknown or revoked
+ * access tokens with 401, and answers other REST requests with responses queued by the test,
+ * or with 404 if none is queued.
+ */
+final class MockSalesforceServer {
+
+    static final String ORG_ID = "00D000000000001";
+    static final String VERSION = "27.0";
+    static final String LAST_MODIFIED = "Tue, 01 Jan 2013 00:00:00 GMT";
+
+    private static final String DATA_PATH = "/services/data/";
+    private static final String TOKEN_PATH = "/services/oauth2/token";
+    private static final String REVOKE_PATH = "/services/oauth2/revoke";
+    private static final String NOT_FOUND =
+        "[{\"errorCode\":\"NOT_FOUND\",\"message\":\"The requested resource does not exist\"}]";
+
+    private final Server server = new Server();
+    private final SelectChannelConnector connector = new SelectChannelConnector();
+    private final Map<String, LinkedList<MockResponse>> responses = new HashMap<String, LinkedList<MockResponse>>();
+    private final List<RecordedRequest> requests = new ArrayList<RecordedRequest>();
+    private final Set<String> validTokens = new HashSet<String>();
+    private int logins;
+
+    MockSalesforceServer() throws Exception {
+        connector.setPort(0);
+        connector.setHost("localhost");
+        server.addConnector(connector);
+        server.setHandler(new AbstractHandler() {
+            public void handle(String target, Request baseRequest, HttpServletRequest request,
+                               HttpServletResponse response) throws IOException {
+                baseRequest.setHandled(true);
+                MockSalesforceServer.this.handle(request, response);
+            }
+        });
+        server.start();
+    }
+
+    void stop() throws Exception {
+        server.stop();
+    }
+
+    String getUrl() {
+        return "http://localhost:" + connector.getLocalPort();
+    }
+
+    SalesforceLoginConfig getLoginConfig() {
+        return new SalesforceLoginConfig(getUrl(), "clientId", "clientSecret", "user@example.com", "password", false);
+    }
+
+    /**
+     * Creates a started HTTP client, which must be stopped after use.
+     */
+    static HttpClient startHttpClient() throws Exception {
+        final HttpClient httpClient = new HttpClient();
+        httpClient.setConnectTimeout(5000);
+        httpClient.setTimeout(5000);
+        httpClient.start();
+        return httpClient;
+    }
+
+    /**
+     * Queues a response for a REST request, responses for the same request are returned in order.
+     * @param method HTTP method
+     * @param path path relative to the services data root of any API version, like {@code /sobjects/}
+     * @param status HTTP status
+     * @param content response content, may be null
+     * @param headers response header names and values
+     */
+    void respond(String method, String path, int status, byte[] content, String... headers) {
+        respond(method, path, new MockResponse(status, content, headers));
+    }
+
+    /**
+     * Queues a response that sends half its content, and the rest after a delay.
+     * @param delay delay in milliseconds before the second half of the content
+     */
+    void respondSlowly(String method, String path, byte[] content, long delay) {
+        final MockResponse response = new MockResponse(200, content);
+        response.delay = delay;
+        respond(method, path, response);
+    }
+
+    private synchronized void respond(String method, String path, MockResponse response) {
+        LinkedList<MockResponse> queue = responses.get(method + " " + path);
+        if (queue == null) {
+            queue = new LinkedList<MockResponse>();
+            responses.put(method + " " + path, queue);
+        }
+        queue.add(response);
+    }
+
+    /**
+     * Queues a describe response with the snapshot description of an SObject.
+     */
+    void respondDescription(String objectName, String... headers) throws IOException {
+        respond("GET", "/sobjects/" + objectName + "/describe/", 200, readDescription(objectName), headers);
+    }
+
+    static byte[] readDescription(String objectName) throws IOException {
+        return DescriptionFetcher.readFully(
+            new FileInputStream("src/test/resources/snapshot/sobjects/" + objectName + ".json"));
+    }
+
+    static byte[] gzip(byte[] content) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final GZIPOutputStream out = new GZIPOutputStream(bytes);
+        out.write(content);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Revokes all access tokens, like expired sessions.
+     */
+    synchronized void expireSessions() {
+        validTokens.clear();
+    }
+
+    synchronized int getLogins() {
+        return logins;
+    }
+
+    /**
+     * Returns REST requests received so far, without logins.
+     */
+    synchronized List<RecordedRequest> getRequests() {
+        return new ArrayList<RecordedRequest>(requests);
+    }
+
+    /**
+     * Returns the number of REST requests received for a path relative to the services data root.
+     */
+    synchronized int getRequestCount(String method, String path) {
+        int count = 0;
+        for (RecordedRequest request : requests) {
+            if (request.getMethod().equals(method) && request.getPath().equals(path)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void handle(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        final String path = request.getRequestURI();
+        final byte[] body = readFully(request.getInputStream());
+
+        final MockResponse mockResponse;
+        synchronized (this) {
+            if (TOKEN_PATH.equals(path)) {
+                final String accessToken = ORG_ID + "!token" + (++logins);
+                validTokens.add(accessToken);
+                mockResponse = new MockResponse(200, String.format(
+                    "{\"id\":\"%s/id/%s/005D0000001AbCdIAK\",\"issued_at\":\"%s\",\"instance_url\":\"%s\","
+                        + "\"signature\":\"signature\",\"access_token\":\"%s\"}",
+                    getUrl(), ORG_ID, System.currentTimeMillis(), getUrl(), accessToken).getBytes("UTF-8"));
+            } else if (REVOKE_PATH.equals(path)) {
+                validTokens.remove(request.getParameter("token"));
+                mockResponse = new MockResponse(200, null);
+            } else {
+                final String authorization = request.getHeader("Authorization");
+                final String dataPath = path.replaceFirst("^" + DATA_PATH + "v[^/]+", "");
+                requests.add(new RecordedRequest(request.getMethod(), dataPath, request.getHeader("If-Modified-Since"),
+                    request.getHeader("Accept-Encoding"), new String(body, "UTF-8")));
+                final LinkedList<MockResponse> queue = responses.get(request.getMethod() + " " + dataPath);
+                if (authorization == null || !validTokens.contains(authorization.replaceFirst("^OAuth ", ""))) {
+                    mockResponse = new MockResponse(401,
+                        "[{\"errorCode\":\"INVALID_SESSION_ID\",\"message\":\"Session expired or invalid\"}]"
+                            .getBytes("UTF-8"));
+                } else if (queue != null && !queue.isEmpty()) {
+                    mockResponse = queue.removeFirst();
+                } else {
+                    mockResponse = new MockResponse(404, NOT_FOUND.getBytes("UTF-8"));
+                }
+            }
+        }
+
+        response.setStatus(mockResponse.status);
+        for (int i = 0; i + 1 < mockResponse.headers.length; i += 2) {
+            response.setHeader(mockResponse.headers[i], mockResponse.headers[i + 1]);
+        }
+        if (mockResponse.content != null) {
+            response.setContentType("application/json;charset=UTF-8");
+            response.setContentLength(mockResponse.content.length);
+            if (mockResponse.delay > 0) {
+                final int half = mockResponse.content.length / 2;
+                response.getOutputStream().write(mockResponse.content, 0, half);
+                response.flushBuffer();
+                try {
+                    Thread.sleep(mockResponse.delay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                response.getOutputStream().write(mockResponse.content, half, mockResponse.content.length - half);
+            } else {
+                response.getOutputStream().write(mockResponse.content);
+            }
+        }
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    private static final class MockResponse {
+
+        private final int status;
+        private final byte[] content;
+        private final String[] headers;
+        private long delay;
+
+        MockResponse(int status, byte[] content, String... headers) {
+            this.status = status;
+            this.content = content;
+            this.headers = headers;
+        }
+    }
+
+    /**
+     * REST request received by the server.
+     */
+    static final class RecordedRequest {
+
+        private final String method;
+        private final String path;
+        private final String ifModifiedSince;
+        private final String acceptEncoding;
+        private final String body;
+
+        RecordedRequest(String method, String path, String ifModifiedSince, String acceptEncoding, String body) {
+            this.method = method;
+            this.path = path;
+            this.ifModifiedSince = ifModifiedSince;
+            this.acceptEncoding = acceptEncoding;
+            this.body = body;
+        }
+
+        String getMethod() {
+            return method;
+        }
+
+        String getPath() {
+            return path;
+        }
+
+        String getIfModifiedSince() {
+            return ifModifiedSince;
+        }
+
+        String getAcceptEncoding() {
+            return acceptEncoding;
+        }
+
+        String getBody() {
+            return body;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.camel.maven;
+
+import org.apache.maven.plugin.AbstractMojo;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Test fixture that applies the default-value of every @parameter declared in a mojo class and its
+ * superclasses, read from their sources, like Maven does before configuring a mojo.
+ * Tests only set the parameters they change, so they cannot drift from the declared defaults.
+ * Defaults using Maven expressions other than ${project.build.directory}, ${basedir} and ${user.home},
+ * like ${session.startTime}, are left unset.
+ */
+final class MojoDefaults {
+
+    private static final File BASEDIR = new File(".").getAbsoluteFile().getParentFile();
+
+    // a javadoc comment, not spanning comments, followed by a field declaration
+    private static final Pattern PARAMETER = Pattern.compile(
+        "/\\*\\*((?:(?!\\*/).)*)\\*/\\s*(?:protected|private|public)\\s+[\\w.<>\\[\\], ]+?\\s+(\\w+)\\s*;",
+        Pattern.DOTALL);
+    private static final Pattern DEFAULT_VALUE = Pattern.compile("@parameter\\b[^\\n]*\\bdefault-value=\"([^\"]*)\"");
+
+    private MojoDefaults() {
+    }
+
+    /**
+     * Applies declared parameter defaults to a mojo.
+     * @param mojo mojo
+     * @return the mojo
+     */
+    static <T extends AbstractMojo> T apply(T mojo) {
+        for (Class<?> type = mojo.getClass(); type != AbstractMojo.class; type = type.getSuperclass()) {
+            final File source = new File(BASEDIR, "src/main/java/" + type.getName().replace('.', '/') + ".java");
+            final Matcher matcher = PARAMETER.matcher(readSource(source));
+            while (matcher.find()) {
+                final Matcher defaultValue = DEFAULT_VALUE.matcher(matcher.group(1));
+                if (defaultValue.find()) {
+                    final String value = resolve(defaultValue.group(1));
+                    if (!value.contains("${")) {
+                        set(mojo, type, matcher.group(2), value);
+                    }
+                }
+            }
+        }
+        return mojo;
+    }
+
+    private static String resolve(String value) {
+        return value.replace("${project.build.directory}", new File(BASEDIR, "target").getPath())
+            .replace("${basedir}", BASEDIR.getPath())
+            .replace("${user.home}", System.getProperty("user.home"));
+    }
+
+    private static void set(Object mojo, Class<?> type, String name, String value) {
+        try {
+            final Field field = type.getDeclaredField(name);
+            final Class<?> fieldType = field.getType();
+            final Object converted;
+            if (fieldType == String.class) {
+                converted = value;
+            } else if (fieldType == File.class) {
+                converted = new File(value).isAbsolute() ? new File(value) : new File(BASEDIR, value);
+            } else if (fieldType == boolean.class || fieldType == Boolean.class) {
+                converted = Boolean.valueOf(value);
+            } else if (fieldType == int.class || fieldType == Integer.class) {
+                converted = Integer.valueOf(value);
+            } else if (fieldType == long.class || fieldType == Long.class) {
+                converted = Long.valueOf(value);
+            } else {
+                throw new IllegalStateException("Unsupported type " + fieldType.getName() + " of parameter " + name);
+            }
+            field.setAccessible(true);
+            field.set(mojo, converted);
+        } catch (NoSuchFieldException e) {
+            throw new IllegalStateException("Parameter " + name + " not found in " + type.getName(), e);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Error setting parameter " + name + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static String readSource(File source) {
+        try {
+            return new String(DescriptionFetcher.readFully(new FileInputStream(source)), "UTF-8");
+        } catch (IOException e) {
+            throw new IllegalStateException("Error reading mojo source " + source + ": " + e.getMessage(), e);
+        }
+    }
+}
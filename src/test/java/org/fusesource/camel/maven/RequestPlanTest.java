@@ -0,0 +1,77 @@
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.camel.maven;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class RequestPlanTest {
+
+    @Test
+    public void testGlobalObjectsRequired() throws Exception {
+        final SObjectFilter noFilter = new SObjectFilter(null, null);
+        final String[] includes = new String[] { "Merchandise__c" };
+
+        // explicit includes are described directly, even with excludes and suffix filters
+        Assert.assertFalse(RequestPlan.isGlobalObjectsRequired(includes, null, noFilter));
+        Assert.assertFalse(RequestPlan.isGlobalObjectsRequired(includes, " ",
+            new SObjectFilter(null, new String[] { "History" })));
+
+        // all Objects, patterns and attribute filters need the global list
+        Assert.assertTrue(RequestPlan.isGlobalObjectsRequired(null, null, noFilter));
+        Assert.assertTrue(RequestPlan.isGlobalObjectsRequired(new String[0], null, noFilter));
+        Assert.assertTrue(RequestPlan.isGlobalObjectsRequired(includes, ".*__c", noFilter));
+        Assert.assertTrue(RequestPlan.isGlobalObjectsRequired(includes, null,
+            new SObjectFilter(Collections.singletonMap("queryable", "true"), null)));
+    }
+
+    @Test
+    public void testCountRequests() throws Exception {
+        final List<String> objectNames = new ArrayList<String>();
+        for (int i = 0; i < 30; i++) {
+            objectNames.add("Object" + i + "__c");
+        }
+
+        final RequestPlan describe = new RequestPlan(true, objectNames, createFetcher("27.0", false));
+        Assert.assertEquals(30, describe.getDescribeRequests());
+        Assert.assertEquals(31, describe.getTotalRequests());
+        Assert.assertEquals("31 metadata requests, 1 getGlobalObjects and 30 describe requests for 30 Objects",
+            describe.toString());
+
+        // Composite Batch describes up to 25 Objects per request
+        final RequestPlan batch = new RequestPlan(false, objectNames, createFetcher("34.0", true));
+        Assert.assertFalse(batch.isGlobalObjects());
+        Assert.assertEquals(2, batch.getDescribeRequests());
+        Assert.assertEquals(2, batch.getTotalRequests());
+
+        // batch fetchers describe Objects one at a time in older API versions
+        Assert.assertEquals(30, new RequestPlan(false, objectNames, createFetcher("27.0", true)).getTotalRequests());
+    }
+
+    private static DescriptionFetcher createFetcher(String version, boolean batch) {
+        // planning sends no requests
+        final MetadataRestClient metadataClient = new MetadataRestClient(null, null, version, 5000);
+        return batch
+            ? new BatchDescriptionFetcher(metadataClient, new ObjectMapper(), 1, new SystemStreamLog())
+            : new DescriptionFetcher(metadataClient, new ObjectMapper(), 1, new SystemStreamLog());
+    }
+}
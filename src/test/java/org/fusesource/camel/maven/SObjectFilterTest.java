@@ -0,0 +1,86 @@
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.camel.maven;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.fusesource.camel.component.salesforce.api.dto.SObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class SObjectFilterTest {
+
+    @Test
+    public void testAttributes() throws Exception {
+        final Map<String, String> attributes = new HashMap<String, String>();
+        attributes.put("queryable", "true");
+        attributes.put(" custom ", "TRUE ");
+        final SObjectFilter filter = new SObjectFilter(attributes, null);
+        Assert.assertTrue(filter.hasAttributes());
+        Assert.assertFalse(filter.isEmpty());
+
+        // values are compared as case insensitive strings
+        Assert.assertTrue(filter.accept(createSObject("Merchandise__c", true, true)));
+        Assert.assertFalse(filter.accept(createSObject("Account", true, false)));
+        Assert.assertFalse(filter.accept(createSObject("Merchandise__Share", false, true)));
+        // missing attributes do not match
+        Assert.assertFalse(filter.accept(createSObject("Invoice__c", null, true)));
+    }
+
+    @Test
+    public void testExcludeSuffixes() throws Exception {
+        final SObjectFilter filter = new SObjectFilter(null, new String[] { "History", " Share " });
+        Assert.assertFalse(filter.hasAttributes());
+        Assert.assertFalse(filter.isEmpty());
+
+        // names are filtered without attributes, so explicit includes need no getGlobalObjects
+        Assert.assertTrue(filter.acceptName("Merchandise__c"));
+        Assert.assertFalse(filter.acceptName("Merchandise__History"));
+        Assert.assertFalse(filter.acceptName("Merchandise__Share"));
+        Assert.assertFalse(filter.accept(createSObject("AccountHistory", true, false)));
+        Assert.assertTrue(filter.accept(createSObject("Account", true, false)));
+
+        Assert.assertTrue(new SObjectFilter(null, null).isEmpty());
+    }
+
+    @Test
+    public void testInvalidConfiguration() throws Exception {
+        final Map<String, String> attributes = new HashMap<String, String>();
+        attributes.put("queryabel", "true");
+        try {
+            new SObjectFilter(attributes, null);
+            Assert.fail("Unknown attribute should be rejected");
+        } catch (MojoExecutionException expected) {
+            Assert.assertEquals("Unknown SObject attribute queryabel", expected.getMessage());
+        }
+        try {
+            new SObjectFilter(null, new String[] { "History", " " });
+            Assert.fail("Empty suffix should be rejected");
+        } catch (MojoExecutionException expected) {
+            Assert.assertEquals("Invalid empty suffix in excludeSuffixes", expected.getMessage());
+        }
+    }
+
+    private static SObject createSObject(String name, Boolean queryable, Boolean custom) {
+        final SObject sObject = new SObject();
+        sObject.setName(name);
+        sObject.setQueryable(queryable);
+        sObject.setCustom(custom);
+        return sObject;
+    }
+}
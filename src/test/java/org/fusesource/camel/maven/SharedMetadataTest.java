@@ -0,0 +1,95 @@
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.camel.maven;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+
+public class SharedMetadataTest {
+
+    private MockSalesforceServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockSalesforceServer();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop();
+    }
+
+    @Test
+    public void testCloseWithLastExecution() throws Exception {
+        final SharedMetadata metadata = get("session1", "settings");
+        final SalesforceConnection first = metadata.getConnection(new Opener());
+        final SalesforceConnection second = metadata.getConnection(new Opener());
+        Assert.assertSame(first, second);
+        Assert.assertEquals(1, server.getLogins());
+
+        // the connection stays open while another execution is using it
+        Assert.assertFalse(metadata.release());
+        Assert.assertTrue(first.getHttpClient().isRunning());
+        Assert.assertTrue(metadata.release());
+        Assert.assertFalse(first.getHttpClient().isRunning());
+
+        // a later execution of the same session opens a new connection, and keeps the shared metadata
+        final SalesforceConnection third = metadata.getConnection(new Opener());
+        Assert.assertNotSame(first, third);
+        Assert.assertEquals(2, server.getLogins());
+        Assert.assertSame(metadata, get("session1", "settings"));
+        Assert.assertTrue(metadata.release());
+
+        try {
+            metadata.release();
+            Assert.fail("Released connection should not be released again");
+        } catch (IllegalStateException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testKeyedBySession() throws Exception {
+        final SharedMetadata metadata = get("session1", "settings");
+        Assert.assertSame(metadata, get("session1", "settings"));
+        Assert.assertNotSame(metadata, get("session1", "otherSettings"));
+
+        // a later build in the same JVM drops the metadata of earlier builds
+        final SharedMetadata next = get("session2", "settings");
+        Assert.assertNotSame(metadata, next);
+        Assert.assertSame(next, get("session2", "settings"));
+        Assert.assertNotSame(metadata, get("session1", "settings"));
+    }
+
+    private SharedMetadata get(String session, String settings) {
+        return SharedMetadata.get(session, server.getUrl(), "user@example.com", MockSalesforceServer.VERSION,
+            settings);
+    }
+
+    private class Opener implements Callable<SalesforceConnection> {
+
+        public SalesforceConnection call() throws Exception {
+            return SalesforceConnection.open(server.getLoginConfig(), MockSalesforceServer.VERSION, 5000, 5000,
+                null, new SystemStreamLog());
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.camel.maven;
+
+import org.junit.Assert;
+import org.junit.Assume;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Compiles generated sources with the test classpath and loads them, so tests can exercise generated code.
+ */
+final class SourceCompiler {
+
+    private SourceCompiler() {
+    }
+
+    /**
+     * Compiles all Java sources in a directory, and fails the test on compilation errors.
+     * Skips the test if no system Java compiler is available, like when running on a JRE.
+     * @param sourceDirectory generated sources directory
+     * @return class loader for the compiled classes
+     * @throws Exception on errors
+     */
+    static ClassLoader compile(File sourceDirectory) throws Exception {
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        Assume.assumeNotNull(compiler);
+
+        final List<File> sources = new ArrayList<File>();
+        collectSources(sourceDirectory, sources);
+        final File classesDirectory = new File(sourceDirectory.getPath() + "-classes");
+        CamelSalesforceMojoSnapshotTest.deleteDirectory(classesDirectory);
+        Assert.assertTrue(classesDirectory.mkdirs());
+
+        final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+        final StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, null);
+        try {
+            final List<String> options = Arrays.asList("-nowarn", "-d", classesDirectory.getPath(),
+                "-classpath", getClasspath());
+            final boolean compiled = compiler.getTask(null, fileManager, diagnostics, options, null,
+                fileManager.getJavaFileObjectsFromFiles(sources)).call();
+            if (!compiled) {
+                final StringBuilder message = new StringBuilder("Generated sources do not compile:");
+                for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+                    if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                        message.append('\n').append(diagnostic);
+                    }
+                }
+                Assert.fail(message.toString());
+            }
+        } finally {
+            fileManager.close();
+        }
+
+        return new URLClassLoader(new URL[] { classesDirectory.toURI().toURL() },
+            SourceCompiler.class.getClassLoader());
+    }
+
+    /**
+     * Calls a public method by name, with the first overload accepting the arguments.
+     */
+    static Object invoke(Object target, String name, Object... args) throws Exception {
+        final Class<?> type = target instanceof Class ? (Class<?>) target : target.getClass();
+        for (Method method : type.getMethods()) {
+            if (method.getName().equals(name) && isApplicable(method.getParameterTypes(), args)) {
+                return method.invoke(target instanceof Class ? null : target, args);
+            }
+        }
+        throw new NoSuchMethodException(type.getName() + "." + name);
+    }
+
+    private static boolean isApplicable(Class<?>[] parameterTypes, Object[] args) {
+        if (parameterTypes.length != args.length) {
+            return false;
+        }
+        for (int i = 0; i < args.length; i++) {
+            if (args[i] != null && !parameterTypes[i].isPrimitive() && !parameterTypes[i].isInstance(args[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void collectSources(File directory, List<File> sources) {
+        final File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.isDirectory()) {
+                    collectSources(file, sources);
+                } else if (file.getName().endsWith(".java")) {
+                    sources.add(file);
+                }
+            }
+        }
+    }
+
+    // test classpath, including class loader URLs when the surefire booter jar hides them
+    private static String getClasspath() throws Exception {
+        final Set<String> entries = new LinkedHashSet<String>(
+            Arrays.asList(System.getProperty("java.class.path").split(File.pathSeparator)));
+        for (ClassLoader loader = SourceCompiler.class.getClassLoader(); loader != null; loader = loader.getParent()) {
+            if (loader instanceof URLClassLoader) {
+                for (URL url : ((URLClassLoader) loader).getURLs()) {
+                    if ("file".equals(url.getProtocol())) {
+                        entries.add(new File(url.toURI()).getPath());
+                    }
+                }
+            }
+        }
+        final StringBuilder classpath = new StringBuilder();
+        for (String entry : entries) {
+            if (classpath.length() > 0) {
+                classpath.append(File.pathSeparator);
+            }
+            classpath.append(entry);
+        }
+        return classpath.toString();
+    }
+}
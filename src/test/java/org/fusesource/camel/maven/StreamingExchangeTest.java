@@ -0,0 +1,44 @@
+/*
+ * Copyright 2001-2005 The Apache Software Foundation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fusesource.camel.maven;
+
+import org.eclipse.jetty.io.ByteArrayBuffer;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+
+public class StreamingExchangeTest {
+
+    @Test(timeout = 10000)
+    public void testDeliverContentWithoutReader() throws Exception {
+        final StreamingExchange exchange = new StreamingExchange(5000, System.currentTimeMillis() + 10000);
+        final InputStream content = exchange.getResponseStream();
+
+        // the IO thread delivers all chunks without waiting for the reader
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        for (int i = 0; i < 1000; i++) {
+            final byte[] chunk = ("chunk" + i + ",").getBytes("UTF-8");
+            expected.write(chunk);
+            exchange.onResponseContent(new ByteArrayBuffer(chunk));
+        }
+        exchange.onResponseComplete();
+
+        Assert.assertArrayEquals(expected.toByteArray(), DescriptionFetcher.readFully(content));
+    }
+}